@@ -0,0 +1,250 @@
+package com.app.bubble;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Versioned, memory-mapped word table used as the PredictionEngine snapshot.
+ * Opening it only maps the file; binary searches compare the encoded words in place,
+ * so the first lookup is ready right after start-up whatever the dictionary size.
+ *
+ * Layout (big-endian, version 5):
+ *   int magic, int version, int wordCount, int bigramOffset, long journalSequence,
+ *   int[wordCount + 1] string offsets (last one = end of string data),
+ *   UTF-8 words sorted by lower-case key, then by original spelling,
+ *   n-gram section:      int vocabularySize, vocabulary words (int length + UTF-8, in ID order),
+ *                        int pairCount, then per pair: int previousId, int nextId, int count,
+ *                        int tripleCount, then per triple: int firstId, int secondId, int nextId, int count,
+ *                        per vocabulary word: int unigramCount, int contextCount.
+ *   Only the current version is read. A file of any other version is ignored, and the engine rebuilds
+ *   from the journal (the next compaction overwrites it).
+ * Word lookups are inherited from MappedWordList, so one instance can be shared between threads.
+ */
+public class BinaryDictionary extends MappedWordList {
+
+    private static final int MAGIC = 0x42444943; // "BDIC"
+    private static final int VERSION = 5;
+    private static final int HEADER_SIZE = 24;
+
+    // Same ordering as the file: lower-case key first, exact spelling second
+    public static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            int c = toKey(a).compareTo(toKey(b));
+            return c != 0 ? c : a.compareTo(b);
+        }
+    };
+
+    private final int bigramOffset;
+
+    private BinaryDictionary(MappedByteBuffer buffer) {
+        super(buffer, buffer.getInt(8), HEADER_SIZE);
+        this.bigramOffset = buffer.getInt(12);
+    }
+
+    /**
+     * Sequence of the last LearnJournal log this snapshot contains (see LearnJournal.replay).
+     */
+    public long journalSequence() {
+        return buffer.getLong(16);
+    }
+
+    /**
+     * Maps a dictionary file. Returns null if it does not exist or is not the current version.
+     */
+    public static BinaryDictionary open(File file) {
+        if (!file.exists() || file.length() < HEADER_SIZE) return null;
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) return null;
+            return new BinaryDictionary(mapped);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            // The mapping stays valid after the file is closed
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the n-gram section into 'model'.
+     */
+    public void readNgrams(NgramModel model) {
+        int pos = bigramOffset;
+        int vocabularySize = buffer.getInt(pos);
+        pos += 4;
+        // Interning in file order gives every word the same ID it was written with
+        Vocabulary vocabulary = model.getVocabulary();
+        int[] idMap = new int[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            int len = buffer.getInt(pos);
+            idMap[i] = vocabulary.intern(decode(pos + 4, len));
+            pos += 4 + len;
+        }
+
+        int pairs = buffer.getInt(pos);
+        pos += 4;
+        for (int i = 0; i < pairs; i++) {
+            int previousId = buffer.getInt(pos);
+            int nextId = buffer.getInt(pos + 4);
+            int count = buffer.getInt(pos + 8);
+            pos += 12;
+            model.addBigramIds(idMap[previousId], idMap[nextId], count);
+        }
+
+        int triples = buffer.getInt(pos);
+        pos += 4;
+        for (int i = 0; i < triples; i++) {
+            int firstId = buffer.getInt(pos);
+            int secondId = buffer.getInt(pos + 4);
+            int nextId = buffer.getInt(pos + 8);
+            int count = buffer.getInt(pos + 12);
+            pos += 16;
+            model.addTrigramIds(idMap[firstId], idMap[secondId], idMap[nextId], count);
+        }
+
+        for (int i = 0; i < vocabularySize; i++) {
+            model.setTotalsIds(idMap[i], buffer.getInt(pos), buffer.getInt(pos + 4));
+            pos += 8;
+        }
+    }
+
+    /**
+     * Writes a new dictionary file. The data goes to a temporary file first and is renamed
+     * over the target, so readers never see a half-written file (old mappings stay valid).
+     * 'journalSequence' is the sequence of the journal log whose events the data includes.
+     */
+    public static void write(File target, Collection<String> words, NgramModel ngrams, long journalSequence)
+            throws IOException {
+        List<String> sorted = new ArrayList<>(words);
+        Collections.sort(sorted, KEY_ORDER);
+
+        // Encode the (deduplicated) words once to know the offsets
+        List<byte[]> encoded = new ArrayList<>(sorted.size());
+        String last = null;
+        for (String w : sorted) {
+            if (w.isEmpty() || w.equals(last)) continue;
+            byte[] bytes = w.getBytes(UTF8);
+            if (bytes.length > 0xFFFF) continue;
+            encoded.add(bytes);
+            last = w;
+        }
+
+        int count = encoded.size();
+        int stringStart = HEADER_SIZE + 4 * (count + 1);
+        int pos = stringStart;
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = pos;
+            pos += encoded.get(i).length;
+        }
+        offsets[count] = pos;
+        int bigramOffset = pos;
+
+        File tmp = new File(target.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(bigramOffset);
+            out.writeLong(journalSequence);
+            for (int offset : offsets) out.writeInt(offset);
+            for (byte[] bytes : encoded) out.write(bytes);
+
+            Vocabulary vocabulary = ngrams.getVocabulary();
+            out.writeInt(vocabulary.size());
+            for (int i = 0; i < vocabulary.size(); i++) {
+                byte[] bytes = vocabulary.getWord(i).getBytes(UTF8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            final DataOutputStream pairsOut = out;
+            final IOException[] failure = new IOException[1];
+            out.writeInt(ngrams.bigramSize());
+            ngrams.forEachBigram(new NgramTable.Visitor() {
+                @Override
+                public void visit(int previousId, int nextId, int count) {
+                    if (failure[0] != null) return;
+                    try {
+                        pairsOut.writeInt(previousId);
+                        pairsOut.writeInt(nextId);
+                        pairsOut.writeInt(count);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+
+            out.writeInt(ngrams.trigramSize());
+            ngrams.forEachTrigram(new NgramModel.TrigramVisitor() {
+                @Override
+                public void visit(int firstId, int secondId, int nextId, int count) {
+                    if (failure[0] != null) return;
+                    try {
+                        pairsOut.writeInt(firstId);
+                        pairsOut.writeInt(secondId);
+                        pairsOut.writeInt(nextId);
+                        pairsOut.writeInt(count);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+
+            for (int i = 0; i < vocabulary.size(); i++) {
+                out.writeInt(ngrams.getUnigramCount(i));
+                out.writeInt(ngrams.getContextCount(i));
+            }
+            out.flush();
+        } finally {
+            out.close();
+        }
+
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + target);
+        }
+    }
+
+    /**
+     * Normalized lookup key (same per-character lower-casing as PrefixTrie).
+     */
+    public static String toKey(CharSequence word) {
+        StringBuilder sb = null;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            char lower = Character.toLowerCase(c);
+            if (lower != c && sb == null) {
+                sb = new StringBuilder(word.length());
+                sb.append(word, 0, i);
+            }
+            if (sb != null) sb.append(lower);
+        }
+        return sb != null ? sb.toString() : word.toString();
+    }
+}
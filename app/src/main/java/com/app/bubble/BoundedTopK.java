@@ -0,0 +1,104 @@
+package com.app.bubble;
+
+/**
+ * Fixed-capacity min-heap that keeps the k best (id, score) pairs seen so far.
+ * Offering is O(log k) and never allocates, so it can rank any number of candidates.
+ */
+public class BoundedTopK {
+
+    private final int capacity;
+    private final int[] ids;
+    private final double[] scores;
+    private int size = 0;
+
+    public BoundedTopK(int capacity) {
+        this.capacity = capacity;
+        this.ids = new int[capacity];
+        this.scores = new double[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Offers a candidate. If the same id is already held, the better score is kept.
+     * Once full, a score that can't beat the lowest kept one is rejected before the id scan.
+     */
+    public void offer(int id, double score) {
+        // A held id already scores at least scores[0], so nothing here can improve it either
+        if (size == capacity && (capacity == 0 || score <= scores[0])) return;
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                if (score > scores[i]) {
+                    scores[i] = score;
+                    siftDown(i);
+                }
+                return;
+            }
+        }
+
+        if (size < capacity) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Writes the kept ids into 'out' from best to worst and returns how many were written.
+     * The heap is empty afterwards.
+     */
+    public int drainDescending(int[] out) {
+        int n = size;
+        for (int i = n - 1; i >= 0; i--) {
+            out[i] = ids[0];
+            size--;
+            ids[0] = ids[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return n;
+    }
+
+    // --- Heap helpers ---
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && scores[right] < scores[left]) smallest = right;
+            if (scores[i] <= scores[smallest]) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+    }
+}
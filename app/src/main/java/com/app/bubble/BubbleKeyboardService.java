@@ -16,53 +16,59 @@ import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewStub;
 import android.view.Window;
 import android.view.WindowManager;
+import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputConnection;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
 import android.widget.PopupMenu;
-import android.widget.TextView;
 import android.widget.Toast;
 
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class BubbleKeyboardService extends InputMethodService implements KeyboardView.OnKeyboardActionListener {
 
     private LinearLayout mainLayout;
-    private KeyboardView kv;
+    private GboardKeyboardView kv;
     private View candidateView;
-    private LinearLayout candidateContainer;
+    private CandidateStripView candidateStrip;
     private LinearLayout toolbarContainer; 
     private View emojiPaletteView;
+    private ViewStub emojiPaletteStub;
     
     private View clipboardPaletteView;
+    private ViewStub clipboardPaletteStub;
     private ClipboardUiManager clipboardUiManager;
 
     private View translationPanelView;
+    private ViewStub translationPanelStub;
     private TranslationUiManager translationUiManager;
     private boolean isTranslationMode = false;
     private StringBuilder translationBuffer = new StringBuilder();
-    private int lastSentTranslationLength = 0;
+    // NEW: Writes each translation result over the previous one, sending only the changed part
+    private final ComposingTextWriter translationWriter = new ComposingTextWriter();
     private boolean clearTranslationOnNextResult = false;
 
     private boolean isDirectTranslateEnabled = false;
     private String directTargetLangCode = "es"; 
     private StringBuilder directBuffer = new StringBuilder();
-    private int lastDirectOutputLength = 0;
+    // NEW: Translates directBuffer sentence by sentence and owns its output in the editor
+    private final SegmentedTranslator directTranslator = new SegmentedTranslator();
+    // Bumped per request, so a late result for older text is dropped
+    private int directGeneration = 0;
     private long lastGlobeClickTime = 0;
     private Handler directHandler = new Handler(Looper.getMainLooper());
     private Runnable directTranslateRunnable;
-    private ExecutorService bgExecutor = Executors.newSingleThreadExecutor();
+    private TaskScheduler.Token directTranslationToken;
 
     // --- NEW AUTO SAVE VARIABLES ---
     private ImageButton btnAutoSave;
     private boolean isAutoSaveEnabled = false;
     private StringBuilder autoSaveBuffer = new StringBuilder();
-    private boolean isTypingNewEntry = true; // True = Create new clip; False = Update existing clip
 
     private ImageButton btnClipboard;
     private ImageButton btnKeyboardSwitch;
@@ -73,11 +79,18 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
 
     private Keyboard keyboardQwerty;
     private Keyboard keyboardSymbols;
+    // NEW: Glide typing over the letter keys of keyboardQwerty
+    private GestureDecoder gestureDecoder;
+    private static final int GESTURE_CANDIDATES = 5;
 
     private boolean isCaps = false;
     private boolean isEmojiVisible = false;
     private StringBuilder currentWord = new StringBuilder(); 
+    // Incremental trie cursor kept in sync with currentWord (push/pop/reset per key)
+    private PredictionEngine.SuggestionSession suggestionSession;
     private String lastCommittedWord = null; 
+    // Word before lastCommittedWord (trigram context for predictions)
+    private String secondLastCommittedWord = null;
 
     private boolean justAutoCorrected = false;
     private String lastOriginalWord = "";
@@ -99,116 +112,196 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
         }
     };
 
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // NEW: Load the dictionary and clipboard history off the main thread before the first key needs them
+        PredictionEngine.prewarm(this);
+        ClipboardManagerHelper.prewarm(this);
+    }
+
+    @Override
+    public void onStartInput(EditorInfo attribute, boolean restarting) {
+        super.onStartInput(attribute, restarting);
+        // No-op when loaded; reloads in the background if the engine was evicted meanwhile
+        PredictionEngine.prewarm(this);
+    }
+
     @Override
     public View onCreateInputView() {
+        long start = LatencyRecorder.now();
         mainLayout = new LinearLayout(this);
         mainLayout.setOrientation(LinearLayout.VERTICAL);
 
         LayoutInflater inflater = getLayoutInflater();
 
-        translationPanelView = inflater.inflate(R.layout.layout_translation_panel, mainLayout, false);
-        translationPanelView.setVisibility(View.GONE);
-        
-        translationUiManager = new TranslationUiManager(this, translationPanelView, new TranslationUiManager.TranslationListener() {
-            @Override
-            public void onTranslationResult(String translatedText) {
-                InputConnection ic = getCurrentInputConnection();
-                if (ic != null) {
-                    if (lastSentTranslationLength > 0) {
-                        ic.deleteSurroundingText(lastSentTranslationLength, 0);
-                    }
-                    ic.commitText(translatedText, 1);
-                    lastSentTranslationLength = translatedText.length();
-
-                    if (clearTranslationOnNextResult) {
-                        translationBuffer.setLength(0);
-                        translationUiManager.updateInputPreview("");
-                        lastSentTranslationLength = 0;
-                        clearTranslationOnNextResult = false;
-                        
-                        if (toolbarContainer != null) toolbarContainer.setVisibility(View.VISIBLE);
-                        updateCandidates("");
-                    }
-                }
-            }
-
-            @Override
-            public void onCloseTranslation() {
-                toggleTranslationMode();
-            }
-
-            @Override
-            public void onPasteText(String text) {
-                if (text != null) {
-                    translationBuffer.append(text);
-                    translationUiManager.updateInputPreview(translationBuffer.toString());
-                    translationUiManager.performTranslation(translationBuffer.toString());
-                }
-            }
-        });
-        mainLayout.addView(translationPanelView);
+        // NEW: The panels are inflated on first use (see inflatePanel); until then an empty stub holds their place
+        translationPanelView = null;
+        translationUiManager = null;
+        translationPanelStub = addPanelStub();
 
         candidateView = inflater.inflate(R.layout.candidate_view, mainLayout, false);
-        candidateContainer = candidateView.findViewById(R.id.candidate_container);
+        candidateStrip = candidateView.findViewById(R.id.candidate_strip);
+        candidateStrip.setCandidateListener(this::onCandidateSelected);
         toolbarContainer = candidateView.findViewById(R.id.toolbar_container);
         
         setupToolbarButtons();
         mainLayout.addView(candidateView);
 
-        kv = (KeyboardView) inflater.inflate(R.layout.layout_real_keyboard, mainLayout, false);
+        kv = (GboardKeyboardView) inflater.inflate(R.layout.layout_real_keyboard, mainLayout, false);
         keyboardQwerty = new Keyboard(this, R.xml.qwerty);
         keyboardSymbols = new Keyboard(this, R.xml.symbols);
+        // NEW: Auto-correction weighs typos by the distance between the laid-out keys
+        PredictionEngine.setKeyLayout(KeyProximity.fromKeyboard(keyboardQwerty));
+        gestureDecoder = GestureDecoder.fromKeyboard(keyboardQwerty);
         kv.setKeyboard(keyboardQwerty);
+        if (gestureDecoder != null) kv.setGestureListener(this::onGestureTyped);
         kv.setOnKeyboardActionListener(this);
-        kv.setPreviewEnabled(false); 
         mainLayout.addView(kv);
 
-        emojiPaletteView = inflater.inflate(R.layout.layout_emoji_palette, mainLayout, false);
-        emojiPaletteView.setVisibility(View.GONE);
-        EmojiUtils.setupEmojiGrid(this, emojiPaletteView, new EmojiUtils.EmojiListener() {
-            @Override
-            public void onEmojiClick(String emoji) {
-                getCurrentInputConnection().commitText(emoji, 1);
-            }
-        });
-        setupEmojiControlButtons();
-        mainLayout.addView(emojiPaletteView);
+        emojiPaletteView = null;
+        emojiPaletteStub = addPanelStub();
+        clipboardPaletteView = null;
+        clipboardUiManager = null;
+        clipboardPaletteStub = addPanelStub();
+        // Recreated while translating: the mode still needs its manager
+        if (isTranslationMode) getTranslationPanel();
 
-        clipboardPaletteView = inflater.inflate(R.layout.layout_clipboard_palette, mainLayout, false);
-        clipboardPaletteView.setVisibility(View.GONE);
-        
-        clipboardUiManager = new ClipboardUiManager(this, clipboardPaletteView, new ClipboardUiManager.ClipboardListener() {
-            @Override
-            public void onPasteItem(String text) {
-                if (isTranslationMode) {
-                    translationBuffer.append(text);
-                    translationUiManager.updateInputPreview(translationBuffer.toString());
-                    translationUiManager.performTranslation(translationBuffer.toString());
-                    toggleClipboardPalette(); 
-                } else if (isDirectTranslateEnabled) {
-                    directBuffer.append(text);
-                    performDirectTranslation(directBuffer.toString());
-                    toggleClipboardPalette();
-                } else {
+        LatencyRecorder.record(LatencyRecorder.STAGE_INPUT_VIEW, start);
+        return mainLayout;
+    }
+
+    private ViewStub addPanelStub() {
+        ViewStub stub = new ViewStub(this);
+        mainLayout.addView(stub);
+        return stub;
+    }
+
+    /**
+     * NEW: Inflates a panel in place of its stub. The layout is inflated against mainLayout, so the panel keeps
+     * the size from its XML root (ViewStub.inflate() would give it the stub's wrap_content params).
+     */
+    private View inflatePanel(ViewStub stub, int layoutRes) {
+        long start = LatencyRecorder.now();
+        View panel = getLayoutInflater().inflate(layoutRes, mainLayout, false);
+        panel.setVisibility(View.GONE);
+        int index = mainLayout.indexOfChild(stub);
+        mainLayout.removeViewAt(index);
+        mainLayout.addView(panel, index);
+        LatencyRecorder.record(LatencyRecorder.STAGE_PANEL, start);
+        return panel;
+    }
+
+    private View getTranslationPanel() {
+        if (translationPanelView == null) {
+            translationPanelView = inflatePanel(translationPanelStub, R.layout.layout_translation_panel);
+            translationUiManager = new TranslationUiManager(this, translationPanelView, new TranslationUiManager.TranslationListener() {
+                @Override
+                public void onTranslationResult(String translatedText) {
                     InputConnection ic = getCurrentInputConnection();
                     if (ic != null) {
-                        ic.commitText(text, 1);
-                        PredictionEngine.getInstance(BubbleKeyboardService.this).learnWord(text);
-                        lastCommittedWord = text.trim(); 
+                        // The translation is composing text; a newer result only rewrites what changed
+                        translationWriter.update(ic, translatedText);
+
+                        if (clearTranslationOnNextResult) {
+                            translationWriter.finish(ic);
+                            translationBuffer.setLength(0);
+                            translationUiManager.updateInputPreview("");
+                            clearTranslationOnNextResult = false;
+                            
+                            if (toolbarContainer != null) toolbarContainer.setVisibility(View.VISIBLE);
+                            updateCandidates("");
+                        }
                     }
-                    toggleClipboardPalette(); 
-                    updateCandidates("");
                 }
-            }
 
-            @Override
-            public void onCloseClipboard() {
-                toggleClipboardPalette();
-            }
-        });
-        mainLayout.addView(clipboardPaletteView);
+                @Override
+                public void onCloseTranslation() {
+                    toggleTranslationMode();
+                }
 
-        return mainLayout;
+                @Override
+                public void onPasteText(String text) {
+                    if (text != null) {
+                        translationBuffer.append(text);
+                        translationUiManager.updateInputPreview(translationBuffer.toString());
+                        translationUiManager.performTranslation(translationBuffer.toString());
+                    }
+                }
+
+                @Override
+                public void onSourceLanguageChanged(String languageCode) {
+                    if (isTranslationMode) setTypingLanguage(languageCode);
+                }
+            });
+        }
+        return translationPanelView;
+    }
+
+    private View getEmojiPalette() {
+        if (emojiPaletteView == null) {
+            emojiPaletteView = inflatePanel(emojiPaletteStub, R.layout.layout_emoji_palette);
+            EmojiUtils.setupEmojiGrid(this, emojiPaletteView, new EmojiUtils.EmojiListener() {
+                @Override
+                public void onEmojiClick(String emoji) {
+                    InputConnection ic = getCurrentInputConnection();
+                    if (ic == null) return;
+                    ic.beginBatchEdit();
+                    finishComposing(ic);
+                    ic.commitText(emoji, 1);
+                    ic.endBatchEdit();
+                }
+            });
+            setupEmojiControlButtons();
+        }
+        return emojiPaletteView;
+    }
+
+    private View getClipboardPalette() {
+        if (clipboardPaletteView == null) {
+            clipboardPaletteView = inflatePanel(clipboardPaletteStub, R.layout.layout_clipboard_palette);
+            clipboardUiManager = new ClipboardUiManager(this, clipboardPaletteView, new ClipboardUiManager.ClipboardListener() {
+                @Override
+                public void onPasteItem(String text) {
+                    if (isTranslationMode) {
+                        translationBuffer.append(text);
+                        translationUiManager.updateInputPreview(translationBuffer.toString());
+                        translationUiManager.performTranslation(translationBuffer.toString());
+                        toggleClipboardPalette(); 
+                    } else if (isDirectTranslateEnabled) {
+                        directBuffer.append(text);
+                        performDirectTranslation(directBuffer.toString());
+                        toggleClipboardPalette();
+                    } else {
+                        InputConnection ic = getCurrentInputConnection();
+                        if (ic != null) {
+                            ic.beginBatchEdit();
+                            finishComposing(ic);
+                            ic.commitText(text, 1);
+                            ic.endBatchEdit();
+                            learnWord(text);
+                            rememberCommittedWord(text.trim());
+                        }
+                        toggleClipboardPalette(); 
+                        updateCandidates("");
+                    }
+                }
+
+                @Override
+                public void onCloseClipboard() {
+                    toggleClipboardPalette();
+                }
+            });
+        }
+        return clipboardPaletteView;
+    }
+
+    private static boolean isShowing(View panel) {
+        return panel != null && panel.getVisibility() == View.VISIBLE;
+    }
+
+    private static void hide(View panel) {
+        if (panel != null) panel.setVisibility(View.GONE);
     }
 
     private void setupToolbarButtons() {
@@ -282,41 +375,28 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
             Toast.makeText(this, "Real-Time Saving ON", Toast.LENGTH_SHORT).show();
             // Start a new tracking session
             autoSaveBuffer.setLength(0);
-            isTypingNewEntry = true;
         } else {
             // No Color -> OFF
             btnAutoSave.clearColorFilter();
             Toast.makeText(this, "Real-Time Saving OFF", Toast.LENGTH_SHORT).show();
+            finishAutoSaveClip();
         }
     }
 
-    // --- NEW: Update Clipboard in Real-Time (Safety Logic) ---
+    // --- NEW: Update Clipboard in Real-Time ---
+    // The typed text is one live history entry, updated in memory per key and saved when typing pauses
+    // (Skipped while the history is still loading: the next update carries the whole buffer anyway)
     private void updateAutoSaveClipboard() {
-        String currentText = autoSaveBuffer.toString();
-        
-        // 1. If we are editing an existing line, delete the old version first
-        if (!isTypingNewEntry) {
-            // Assume the previous state was just 1 char shorter
-            if (currentText.length() > 0) {
-                 // We need to delete the version that was saved *before* this keystroke.
-                 // Since we don't track the exact string perfectly in variable, we rely on clipboard add/remove behavior.
-                 // Ideally, we delete the *top* item if it matches our session.
-                 // For simplicity and speed: We delete the item that corresponds to the buffer-1 char.
-                 // Note: Ideally we would use a simpler logic: just add new. But you requested "update".
-                 // So we add the new one. The user sees "growth".
-                 // To prevent spam, we *attempt* to remove the previous entry.
-                 String prevText = currentText.substring(0, currentText.length() - 1);
-                 ClipboardManagerHelper.getInstance(this).deleteItem(prevText);
-            }
-        }
+        ClipboardManagerHelper clipboard = ClipboardManagerHelper.getIfLoaded();
+        if (clipboard != null) clipboard.updateSessionClip(autoSaveBuffer.toString());
+    }
 
-        // 2. Add the current text
-        if (!currentText.isEmpty()) {
-            ClipboardManagerHelper.getInstance(this).addClip(currentText);
-        }
-        
-        // 3. Mark as "Updating" for next key
-        isTypingNewEntry = false;
+    // Enter (or saving turned off) finishes the entry: it is saved and its words are learned once
+    private void finishAutoSaveClip() {
+        ClipboardManagerHelper clipboard = ClipboardManagerHelper.getInstance(this);
+        if (autoSaveBuffer.length() > 0) clipboard.updateSessionClip(autoSaveBuffer.toString());
+        clipboard.finishSessionClip();
+        autoSaveBuffer.setLength(0);
     }
 
     private void showDirectLanguagePopup(View v) {
@@ -363,37 +443,45 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
     }
 
     private void toggleDirectTranslationMode() {
+        // The word being typed (or the last live translation) stays as plain text
+        leaveComposingText();
         isDirectTranslateEnabled = !isDirectTranslateEnabled;
         if (isDirectTranslateEnabled) {
             btnDirectTranslate.setColorFilter(Color.parseColor("#2196F3"), PorterDuff.Mode.SRC_IN);
             Toast.makeText(this, "Live Translation ON (Auto -> " + directTargetLangCode + ")", Toast.LENGTH_SHORT).show();
             directBuffer.setLength(0);
-            lastDirectOutputLength = 0;
+            directTranslator.reset();
         } else {
             btnDirectTranslate.clearColorFilter();
             Toast.makeText(this, "Live Translation OFF", Toast.LENGTH_SHORT).show();
         }
     }
 
+    /**
+     * Debounced live translation of 'text' (the whole directBuffer). Finished sentences come from the
+     * translator's cache, so only the sentence being typed goes over the network and is rewritten.
+     */
     private void performDirectTranslation(final String text) {
-        if (text.trim().isEmpty()) return;
         if (directTranslateRunnable != null) directHandler.removeCallbacks(directTranslateRunnable);
+        final int generation = ++directGeneration;
+        if (text.trim().isEmpty()) {
+            InputConnection ic = getCurrentInputConnection();
+            if (ic != null) directTranslator.clear(ic);
+            return;
+        }
 
+        final String targetLang = directTargetLangCode;
         directTranslateRunnable = new Runnable() {
             @Override
             public void run() {
-                bgExecutor.execute(() -> {
-                    final String result = TranslateApi.translate("auto", directTargetLangCode, text);
+                TaskScheduler.cancel(directTranslationToken);
+                directTranslationToken = TaskScheduler.submitReplaceable(TaskScheduler.LANE_INTERACTIVE,
+                        "direct-translation", () -> {
+                    final SegmentedTranslator.Output result = directTranslator.translate("auto", targetLang, text);
                     new Handler(Looper.getMainLooper()).post(() -> {
-                        if (result != null) {
+                        if (result != null && generation == directGeneration && isDirectTranslateEnabled) {
                             InputConnection ic = getCurrentInputConnection();
-                            if (ic != null) {
-                                if (lastDirectOutputLength > 0) {
-                                    ic.deleteSurroundingText(lastDirectOutputLength, 0);
-                                }
-                                ic.commitText(result, 1);
-                                lastDirectOutputLength = result.length();
-                            }
+                            if (ic != null) directTranslator.apply(ic, result);
                         }
                     });
                 });
@@ -412,6 +500,12 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
 
     @Override
     public void onKey(int primaryCode, int[] keyCodes) {
+        long start = LatencyRecorder.now();
+        handleKey(primaryCode, keyCodes);
+        LatencyRecorder.record(LatencyRecorder.STAGE_ON_KEY, start);
+    }
+
+    private void handleKey(int primaryCode, int[] keyCodes) {
         InputConnection ic = getCurrentInputConnection();
         if (ic == null) return;
 
@@ -436,19 +530,9 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
         if (primaryCode == Keyboard.KEYCODE_DELETE) {
             // NEW: Handle Real-Time Deletion for Auto-Save
             if (isAutoSaveEnabled && autoSaveBuffer.length() > 0) {
-                // 1. Remove the "current" text from clipboard
-                ClipboardManagerHelper.getInstance(this).deleteItem(autoSaveBuffer.toString());
-                
-                // 2. Reduce buffer
+                // The live entry shrinks with the buffer (and is removed once empty)
                 autoSaveBuffer.deleteCharAt(autoSaveBuffer.length() - 1);
-                
-                // 3. Add the "new shorter" text back to clipboard (if not empty)
-                if (autoSaveBuffer.length() > 0) {
-                    ClipboardManagerHelper.getInstance(this).addClip(autoSaveBuffer.toString());
-                } else {
-                    // Buffer empty, next type is new
-                    isTypingNewEntry = true;
-                }
+                updateAutoSaveClipboard();
             }
 
             if (isTranslationMode) {
@@ -458,28 +542,27 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
                     updateCandidates(getLastWord(translationBuffer.toString()));
                     
                     if (translationBuffer.length() == 0) {
-                        ic.deleteSurroundingText(lastSentTranslationLength, 0);
-                        lastSentTranslationLength = 0;
+                        translationWriter.update(ic, "");
                     } 
                 }
             } else if (isDirectTranslateEnabled) {
                 if (directBuffer.length() > 0) {
                     directBuffer.deleteCharAt(directBuffer.length() - 1);
                     performDirectTranslation(directBuffer.toString());
-                    if (directBuffer.length() == 0) {
-                        ic.deleteSurroundingText(lastDirectOutputLength, 0);
-                        lastDirectOutputLength = 0;
-                    }
                 } else {
                     handleBackspace();
                 }
             } else {
                 if (justAutoCorrected) {
+                    // Swap "correction " back to the typed word, which is composing again
                     int lengthToDelete = lastCorrectedWord.length() + 1;
+                    ic.beginBatchEdit();
                     ic.deleteSurroundingText(lengthToDelete, 0);
-                    ic.commitText(lastOriginalWord, 1);
+                    ic.setComposingText(lastOriginalWord, 1);
+                    ic.endBatchEdit();
                     currentWord.setLength(0);
                     currentWord.append(lastOriginalWord);
+                    if (suggestionSession != null) suggestionSession.load(lastOriginalWord);
                     ignoreNextCorrection = true;
                     justAutoCorrected = false;
                 } else {
@@ -491,16 +574,16 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
 
         if (primaryCode == Keyboard.KEYCODE_SHIFT) {
             isCaps = !isCaps;
-            keyboardQwerty.setShifted(isCaps);
-            kv.invalidateAllKeys();
+            // Only the letter keys and the shift key are redrawn
+            if (kv.getKeyboard() == keyboardQwerty) kv.setShifted(isCaps);
+            else keyboardQwerty.setShifted(isCaps);
             return;
         }
 
         if (primaryCode == Keyboard.KEYCODE_DONE) { 
             // NEW: Enter Key finalized the text - Start new entry
             if (isAutoSaveEnabled) {
-                isTypingNewEntry = true;
-                autoSaveBuffer.setLength(0);
+                finishAutoSaveClip();
             }
 
             if (isTranslationMode) {
@@ -508,14 +591,22 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
                 translationUiManager.performTranslation(translationBuffer.toString());
             } else if (isDirectTranslateEnabled) {
                 directBuffer.setLength(0);
-                lastDirectOutputLength = 0;
+                directTranslator.reset();
+                directGeneration++;
+                ic.beginBatchEdit();
+                ic.finishComposingText();
                 ic.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_ENTER));
+                ic.endBatchEdit();
             } else {
-                PredictionEngine.getInstance(this).learnWord(currentWord.toString());
-                lastCommittedWord = currentWord.toString();
+                learnWord(currentWord.toString());
+                rememberCommittedWord(currentWord.toString());
                 currentWord.setLength(0); 
-                updateCandidates("");
+                if (suggestionSession != null) suggestionSession.reset();
+                ic.beginBatchEdit();
+                ic.finishComposingText();
                 ic.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_ENTER));
+                ic.endBatchEdit();
+                updateCandidates("");
             }
             return;
         }
@@ -556,15 +647,18 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
                     boolean correctionApplied = false;
                     
                     if (!ignoreNextCorrection && typo.length() > 1) {
-                        String correction = PredictionEngine.getInstance(this).getBestMatch(typo);
+                        long correctionStart = LatencyRecorder.now();
+                        // Still loading after a cold start: no correction rather than a wait
+                        PredictionEngine engine = PredictionEngine.getIfLoaded(this);
+                        String correction = engine != null ? engine.getBestMatch(typo) : null;
+                        LatencyRecorder.record(LatencyRecorder.STAGE_CORRECTION, correctionStart);
                         if (correction != null && !correction.equals(typo)) {
                             lastOriginalWord = typo;
                             lastCorrectedWord = correction;
                             justAutoCorrected = true;
-                            ic.deleteSurroundingText(typo.length(), 0);
-                            ic.commitText(correction, 1);
                             currentWord.setLength(0);
                             currentWord.append(correction);
+                            if (suggestionSession != null) suggestionSession.load(correction);
                             correctionApplied = true;
                         }
                     } 
@@ -572,14 +666,16 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
                         justAutoCorrected = false;
                         ignoreNextCorrection = false;
                     }
-                    ic.commitText(" ", 1);
+                    // One call replaces the composing typo with "correction " (or finishes the word)
                     String justTyped = currentWord.toString();
-                    PredictionEngine.getInstance(this).learnWord(justTyped);
+                    commitText(ic, justTyped + " ");
+                    learnWord(justTyped);
                     if (lastCommittedWord != null && !lastCommittedWord.isEmpty()) {
-                        PredictionEngine.getInstance(this).learnNextWord(lastCommittedWord, justTyped);
+                        learnNextWord(secondLastCommittedWord, lastCommittedWord, justTyped);
                     }
-                    lastCommittedWord = justTyped;
+                    rememberCommittedWord(justTyped);
                     currentWord.setLength(0); 
+                    if (suggestionSession != null) suggestionSession.reset();
                     updateCandidates("");
                 }
             }
@@ -607,63 +703,187 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
             directBuffer.append(code);
             performDirectTranslation(directBuffer.toString());
         } else {
-            ic.commitText(String.valueOf(code), 1);
             justAutoCorrected = false; 
             if (Character.isLetterOrDigit(code)) {
+                // The word being typed is composing text until Space, punctuation or a candidate ends it
                 currentWord.append(code);
+                setComposingText(ic, currentWord);
+                if (suggestionSession != null) suggestionSession.push(code);
                 updateCandidates(currentWord.toString());
             } else {
-                PredictionEngine.getInstance(this).learnWord(currentWord.toString());
-                lastCommittedWord = currentWord.toString();
+                commitText(ic, currentWord + String.valueOf(code));
+                learnWord(currentWord.toString());
+                rememberCommittedWord(currentWord.toString());
                 currentWord.setLength(0);
+                if (suggestionSession != null) suggestionSession.reset();
                 updateCandidates("");
             }
         }
     }
 
+    /**
+     * NEW: A finished glide over the letter keys. The best word is typed like a tapped word (without
+     * the trailing space, so the next glide or Space finishes it) and the alternatives go to the strip.
+     */
+    private void onGestureTyped(float[] xs, float[] ys, int count) {
+        InputConnection ic = getCurrentInputConnection();
+        if (ic == null) return;
+
+        PredictionEngine engine = PredictionEngine.getIfLoaded(this);
+        if (engine == null) return;
+        List<String> words = engine.decodeGesture(gestureDecoder, xs, ys, count, GESTURE_CANDIDATES);
+        if (words.isEmpty()) return;
+        String word = words.get(0);
+        if (isCaps) word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+
+        // Glided words are separated by a space, unless one was typed already
+        String separator = "";
+        if (isTranslationMode) {
+            if (translationBuffer.length() > 0 && !Character.isWhitespace(translationBuffer.charAt(translationBuffer.length() - 1))) separator = " ";
+        } else if (isDirectTranslateEnabled) {
+            if (directBuffer.length() > 0 && !Character.isWhitespace(directBuffer.charAt(directBuffer.length() - 1))) separator = " ";
+        } else {
+            CharSequence before = ic.getTextBeforeCursor(1, 0);
+            if (before != null && before.length() > 0 && Character.isLetterOrDigit(before.charAt(0))) separator = " ";
+        }
+
+        if (isAutoSaveEnabled) {
+            autoSaveBuffer.append(separator).append(word);
+            updateAutoSaveClipboard();
+        }
+
+        if (isTranslationMode) {
+            translationBuffer.append(separator).append(word);
+            translationUiManager.updateInputPreview(translationBuffer.toString());
+            if (toolbarContainer != null) toolbarContainer.setVisibility(View.GONE);
+        } else if (isDirectTranslateEnabled) {
+            directBuffer.append(separator).append(word);
+            performDirectTranslation(directBuffer.toString());
+        } else {
+            // The previous word is finished by the glide, like by Space
+            if (currentWord.length() > 0) {
+                String previous = currentWord.toString();
+                learnWord(previous);
+                if (lastCommittedWord != null && !lastCommittedWord.isEmpty()) {
+                    learnNextWord(secondLastCommittedWord, lastCommittedWord, previous);
+                }
+                rememberCommittedWord(previous);
+            }
+            ic.beginBatchEdit();
+            ic.commitText(currentWord + separator, 1);
+            ic.setComposingText(word, 1);
+            ic.endBatchEdit();
+            justAutoCorrected = false;
+            currentWord.setLength(0);
+            currentWord.append(word);
+            if (suggestionSession != null) suggestionSession.load(word);
+            if (toolbarContainer != null) toolbarContainer.setVisibility(View.GONE);
+        }
+        showCandidates(words.subList(1, words.size()));
+    }
+
+    /**
+     * commitText on the key path, timed for the latency screen. It replaces the composing word, if any.
+     */
+    private void commitText(InputConnection ic, CharSequence text) {
+        long start = LatencyRecorder.now();
+        ic.commitText(text, 1);
+        LatencyRecorder.record(LatencyRecorder.STAGE_COMMIT, start);
+    }
+
+    /**
+     * setComposingText on the key path (the word being typed), timed like commitText.
+     */
+    private void setComposingText(InputConnection ic, CharSequence text) {
+        long start = LatencyRecorder.now();
+        ic.setComposingText(text, 1);
+        LatencyRecorder.record(LatencyRecorder.STAGE_COMMIT, start);
+    }
+
+    /**
+     * Leaves whatever is composing (the word being typed or a live translation) in the editor as plain text.
+     */
+    private void finishComposing(InputConnection ic) {
+        ic.finishComposingText();
+        currentWord.setLength(0);
+        if (suggestionSession != null) suggestionSession.reset();
+        translationWriter.reset();
+        directBuffer.setLength(0);
+        directTranslator.reset();
+        directGeneration++;
+    }
+
     private void handleBackspace() {
         InputConnection ic = getCurrentInputConnection();
         if (ic != null) {
-            ic.deleteSurroundingText(1, 0);
             if (currentWord.length() > 0) {
                 currentWord.deleteCharAt(currentWord.length() - 1);
+                setComposingText(ic, currentWord);
+                if (suggestionSession != null) suggestionSession.pop();
                 updateCandidates(currentWord.toString());
             } else {
+                ic.deleteSurroundingText(1, 0);
                 if (toolbarContainer != null) toolbarContainer.setVisibility(View.VISIBLE);
                 updateCandidates("");
             }
         }
     }
 
+    /**
+     * The incremental cursor for currentWord, or null while the engine is still loading (updates made
+     * meanwhile are skipped; a new session is synced to currentWord when it is created).
+     */
+    private PredictionEngine.SuggestionSession getSuggestionSession() {
+        if (suggestionSession == null) {
+            PredictionEngine engine = PredictionEngine.getIfLoaded(this);
+            if (engine == null) return null;
+            suggestionSession = engine.newSession();
+            suggestionSession.load(currentWord);
+        }
+        return suggestionSession;
+    }
+
+    /**
+     * Learning never waits for the engine: before it is loaded, it is queued behind the load.
+     */
+    private void learnWord(final String word) {
+        PredictionEngine.whenLoaded(this, engine -> engine.learnWord(word));
+    }
+
+    private void learnNextWord(final String secondLast, final String last, final String word) {
+        PredictionEngine.whenLoaded(this, engine -> engine.learnNextWord(secondLast, last, word));
+    }
+
     private void toggleEmojiPalette() {
-        if (emojiPaletteView.getVisibility() == View.GONE) {
+        if (!isShowing(emojiPaletteView)) {
             kv.setVisibility(View.GONE);
             candidateView.setVisibility(View.GONE);
-            clipboardPaletteView.setVisibility(View.GONE);
-            translationPanelView.setVisibility(View.GONE);
+            hide(clipboardPaletteView);
+            hide(translationPanelView);
+            leaveComposingText();
             isTranslationMode = false;
-            emojiPaletteView.setVisibility(View.VISIBLE);
+            getEmojiPalette().setVisibility(View.VISIBLE);
         } else {
             resetToStandardKeyboard();
         }
     }
 
     private void toggleClipboardPalette() {
-        if (clipboardPaletteView.getVisibility() == View.GONE) {
+        if (!isShowing(clipboardPaletteView)) {
             kv.setVisibility(View.GONE);
             if (isTranslationMode) {
-                translationPanelView.setVisibility(View.VISIBLE);
+                getTranslationPanel().setVisibility(View.VISIBLE);
             } else {
-                translationPanelView.setVisibility(View.GONE);
+                hide(translationPanelView);
             }
             candidateView.setVisibility(View.GONE);
-            emojiPaletteView.setVisibility(View.GONE);
-            clipboardPaletteView.setVisibility(View.VISIBLE);
+            hide(emojiPaletteView);
+            getClipboardPalette().setVisibility(View.VISIBLE);
             if (clipboardUiManager != null) clipboardUiManager.reloadHistory();
         } else {
             clipboardPaletteView.setVisibility(View.GONE);
             if (isTranslationMode) {
-                translationPanelView.setVisibility(View.VISIBLE);
+                getTranslationPanel().setVisibility(View.VISIBLE);
                 candidateView.setVisibility(View.VISIBLE); 
                 kv.setVisibility(View.VISIBLE);
             } else {
@@ -673,28 +893,81 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
     }
 
     private void toggleTranslationMode() {
-        if (translationPanelView.getVisibility() == View.GONE) {
+        if (!isShowing(translationPanelView)) {
             candidateView.setVisibility(View.VISIBLE); 
-            clipboardPaletteView.setVisibility(View.GONE);
-            emojiPaletteView.setVisibility(View.GONE);
-            translationPanelView.setVisibility(View.VISIBLE);
+            hide(clipboardPaletteView);
+            hide(emojiPaletteView);
+            getTranslationPanel().setVisibility(View.VISIBLE);
             kv.setVisibility(View.VISIBLE);
+            leaveComposingText();
             isTranslationMode = true;
             translationBuffer.setLength(0); 
-            lastSentTranslationLength = 0; 
             translationUiManager.updateInputPreview("");
+            setTypingLanguage(translationUiManager.getSourceLangCode());
         } else {
             resetToStandardKeyboard();
         }
     }
 
     private void resetToStandardKeyboard() {
-        emojiPaletteView.setVisibility(View.GONE);
-        clipboardPaletteView.setVisibility(View.GONE);
-        translationPanelView.setVisibility(View.GONE);
+        hide(emojiPaletteView);
+        hide(clipboardPaletteView);
+        hide(translationPanelView);
         candidateView.setVisibility(View.VISIBLE);
         kv.setVisibility(View.VISIBLE);
+        if (isTranslationMode) leaveComposingText();
         isTranslationMode = false;
+        setTypingLanguage(PredictionEngine.DEFAULT_LANGUAGE);
+    }
+
+    /**
+     * Switching between typing and translating: the composing text of one must not be replaced by the other.
+     */
+    private void leaveComposingText() {
+        InputConnection ic = getCurrentInputConnection();
+        if (ic != null) finishComposing(ic);
+    }
+
+    /**
+     * NEW: Predicts in the language being typed (the translation source language, otherwise the default).
+     * The engine loads on first use; the session and context words of the previous language are dropped.
+     */
+    private void setTypingLanguage(String languageCode) {
+        String previous = PredictionEngine.getActiveLanguage();
+        PredictionEngine.setActiveLanguage(languageCode);
+        if (previous.equals(PredictionEngine.getActiveLanguage())) return;
+        suggestionSession = null;
+        lastCommittedWord = null;
+        secondLastCommittedWord = null;
+    }
+
+    /**
+     * The cursor was moved away from the composing text (a tap in the editor): it stays as typed.
+     */
+    @Override
+    public void onUpdateSelection(int oldSelStart, int oldSelEnd, int newSelStart, int newSelEnd,
+                                  int candidatesStart, int candidatesEnd) {
+        super.onUpdateSelection(oldSelStart, oldSelEnd, newSelStart, newSelEnd, candidatesStart, candidatesEnd);
+        if (candidatesStart < 0 || (newSelStart == candidatesEnd && newSelEnd == candidatesEnd)) return;
+        InputConnection ic = getCurrentInputConnection();
+        if (ic == null) return;
+        finishComposing(ic);
+        justAutoCorrected = false;
+        updateCandidates("");
+    }
+
+    @Override
+    public void onFinishInput() {
+        super.onFinishInput();
+        if (isAutoSaveEnabled) finishAutoSaveClip();
+        // The editor keeps its composing text when it loses the connection; the next field starts a new word
+        currentWord.setLength(0);
+        if (suggestionSession != null) suggestionSession.reset();
+        justAutoCorrected = false;
+        translationWriter.reset();
+        directBuffer.setLength(0);
+        directTranslator.reset();
+        directGeneration++;
     }
 
     @Override
@@ -719,60 +992,84 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
         return "";
     }
 
+    /**
+     * Shifts the two-word context used for next-word learning and prediction.
+     */
+    private void rememberCommittedWord(String word) {
+        secondLastCommittedWord = lastCommittedWord;
+        lastCommittedWord = word;
+    }
+
     private void updateCandidates(String wordBeingTyped) {
-        if (candidateContainer == null) return;
+        if (candidateStrip == null) return;
         
-        candidateContainer.removeAllViews();
+        long start = LatencyRecorder.now();
         List<String> suggestions;
+        PredictionEngine engine = PredictionEngine.getIfLoaded(this);
+        PredictionEngine.SuggestionSession session = isTranslationMode ? null : getSuggestionSession();
 
-        if (wordBeingTyped.isEmpty()) {
-            if (lastCommittedWord != null) {
-                suggestions = PredictionEngine.getInstance(this).getNextWordSuggestions(lastCommittedWord);
+        if (engine == null) {
+            // Cold start: the engine is still loading in the background, show an empty strip meanwhile
+            suggestions = Collections.emptyList();
+        } else if (wordBeingTyped.isEmpty()) {
+            PredictionEngine.SuggestionSession next = getSuggestionSession();
+            if (lastCommittedWord != null && next != null && next.length() == 0) {
+                // An empty cursor predicts the next word from the previous two
+                suggestions = next.getSuggestions(secondLastCommittedWord, lastCommittedWord);
             } else {
-                suggestions = PredictionEngine.getInstance(this).getSuggestions(""); 
+                suggestions = engine.getSuggestions(""); 
             }
+        } else if (session != null && session.length() == currentWord.length()
+                   && wordBeingTyped.contentEquals(currentWord)) {
+            // Typing in the editor: reuse the incremental cursor, ranked by the previous words
+            suggestions = session.getSuggestions(secondLastCommittedWord, lastCommittedWord);
         } else {
-            suggestions = PredictionEngine.getInstance(this).getSuggestions(wordBeingTyped);
+            suggestions = engine.getSuggestions(wordBeingTyped);
         }
+        LatencyRecorder.record(LatencyRecorder.STAGE_PREDICTION, start);
+        showCandidates(suggestions);
+    }
 
-        for (final String word : suggestions) {
-            TextView tv = new TextView(this);
-            tv.setText(word);
-            tv.setTextSize(18);
-            tv.setPadding(40, 20, 40, 20);
-            tv.setBackgroundResource(android.R.drawable.list_selector_background);
-            
-            tv.setOnClickListener(v -> {
-                if (isTranslationMode) {
-                    String currentBuffer = translationBuffer.toString();
-                    int lastSpace = currentBuffer.lastIndexOf(" ");
-                    if (lastSpace != -1) {
-                        translationBuffer.setLength(lastSpace + 1);
-                    } else {
-                        translationBuffer.setLength(0);
-                    }
-                    translationBuffer.append(word).append(" ");
-                    translationUiManager.updateInputPreview(translationBuffer.toString());
-                    translationUiManager.performTranslation(translationBuffer.toString());
-                    updateCandidates("");
-                } else {
-                    InputConnection ic = getCurrentInputConnection();
-                    if (ic != null) {
-                        if (currentWord.length() > 0) {
-                            ic.deleteSurroundingText(currentWord.length(), 0);
-                        }
-                        ic.commitText(word + " ", 1);
-                        PredictionEngine.getInstance(this).learnWord(word);
-                        if (lastCommittedWord != null) {
-                            PredictionEngine.getInstance(this).learnNextWord(lastCommittedWord, word);
-                        }
-                        lastCommittedWord = word;
-                        currentWord.setLength(0);
-                        updateCandidates("");
-                    }
+    /**
+     * Fills the candidate strip (redrawn in place, see CandidateStripView).
+     */
+    private void showCandidates(List<String> suggestions) {
+        if (candidateStrip == null) return;
+        long start = LatencyRecorder.now();
+        candidateStrip.setCandidates(suggestions);
+        LatencyRecorder.record(LatencyRecorder.STAGE_CANDIDATES, start);
+    }
+
+    /**
+     * Tapping a candidate replaces the word being typed with it.
+     */
+    private void onCandidateSelected(String word) {
+        if (isTranslationMode) {
+            String currentBuffer = translationBuffer.toString();
+            int lastSpace = currentBuffer.lastIndexOf(" ");
+            if (lastSpace != -1) {
+                translationBuffer.setLength(lastSpace + 1);
+            } else {
+                translationBuffer.setLength(0);
+            }
+            translationBuffer.append(word).append(" ");
+            translationUiManager.updateInputPreview(translationBuffer.toString());
+            translationUiManager.performTranslation(translationBuffer.toString());
+            updateCandidates("");
+        } else {
+            InputConnection ic = getCurrentInputConnection();
+            if (ic != null) {
+                // Replaces the composing word
+                ic.commitText(word + " ", 1);
+                learnWord(word);
+                if (lastCommittedWord != null) {
+                    learnNextWord(secondLastCommittedWord, lastCommittedWord, word);
                 }
-            });
-            candidateContainer.addView(tv);
+                rememberCommittedWord(word);
+                currentWord.setLength(0);
+                if (suggestionSession != null) suggestionSession.reset();
+                updateCandidates("");
+            }
         }
     }
 
@@ -0,0 +1,155 @@
+package com.app.bubble;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+
+import java.util.List;
+
+/**
+ * Suggestion strip drawn as one view: up to MAX_CANDIDATES words in equal slots.
+ * Replacing the words only copies references and invalidates, so a keystroke causes no
+ * allocations, no child views and no layout pass. Slots are hit-tested by position.
+ */
+public class CandidateStripView extends View {
+
+    public interface CandidateListener {
+        void onCandidateSelected(String word);
+    }
+
+    public static final int MAX_CANDIDATES = 5;
+    // Long words are squeezed horizontally down to this scale before they are clipped
+    private static final float MIN_TEXT_SCALE = 0.6f;
+
+    private final String[] candidates = new String[MAX_CANDIDATES];
+    private int count = 0;
+    private int pressedIndex = -1;
+    private CandidateListener listener;
+
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dividerPaint = new Paint();
+    private final Paint pressedPaint = new Paint();
+    private final float slotPadding;
+    private final float dividerInset;
+
+    public CandidateStripView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        textPaint.setColor(Color.parseColor("#202124"));
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 18, getResources().getDisplayMetrics()));
+        dividerPaint.setColor(Color.parseColor("#CCCCCC"));
+        dividerPaint.setStrokeWidth(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 1, getResources().getDisplayMetrics()));
+        pressedPaint.setColor(Color.parseColor("#D8D8D8"));
+        slotPadding = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 8, getResources().getDisplayMetrics());
+        dividerInset = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 10, getResources().getDisplayMetrics());
+    }
+
+    public void setCandidateListener(CandidateListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Shows the first MAX_CANDIDATES words of 'words'. Redraws only if they changed.
+     */
+    public void setCandidates(List<String> words) {
+        int n = Math.min(words.size(), MAX_CANDIDATES);
+        boolean changed = n != count;
+        for (int i = 0; i < n && !changed; i++) {
+            changed = !words.get(i).equals(candidates[i]);
+        }
+        if (!changed) return;
+
+        for (int i = 0; i < MAX_CANDIDATES; i++) {
+            candidates[i] = i < n ? words.get(i) : null;
+        }
+        count = n;
+        pressedIndex = -1;
+        invalidate();
+    }
+
+    public void clear() {
+        if (count == 0) return;
+        for (int i = 0; i < MAX_CANDIDATES; i++) candidates[i] = null;
+        count = 0;
+        pressedIndex = -1;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (count == 0) return;
+
+        float left = getPaddingLeft();
+        float slotWidth = (getWidth() - getPaddingLeft() - getPaddingRight()) / (float) count;
+        float height = getHeight();
+        float baseline = height / 2f - (textPaint.descent() + textPaint.ascent()) / 2f;
+
+        for (int i = 0; i < count; i++) {
+            float slotLeft = left + i * slotWidth;
+            if (i == pressedIndex) {
+                canvas.drawRect(slotLeft, 0, slotLeft + slotWidth, height, pressedPaint);
+            }
+            if (i > 0) {
+                canvas.drawLine(slotLeft, dividerInset, slotLeft, height - dividerInset, dividerPaint);
+            }
+
+            String word = candidates[i];
+            float available = slotWidth - 2 * slotPadding;
+            float width = textPaint.measureText(word);
+            if (width > available && available > 0) {
+                textPaint.setTextScaleX(Math.max(MIN_TEXT_SCALE, available / width));
+            }
+            canvas.save();
+            canvas.clipRect((int) slotLeft, 0, (int) (slotLeft + slotWidth), (int) height);
+            canvas.drawText(word, slotLeft + slotWidth / 2f, baseline, textPaint);
+            canvas.restore();
+            textPaint.setTextScaleX(1f);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                pressedIndex = slotAt(event.getX());
+                invalidate();
+                return pressedIndex >= 0;
+
+            case MotionEvent.ACTION_MOVE:
+                if (pressedIndex >= 0 && slotAt(event.getX()) != pressedIndex) {
+                    pressedIndex = -1;
+                    invalidate();
+                }
+                return true;
+
+            case MotionEvent.ACTION_UP:
+                int index = pressedIndex;
+                pressedIndex = -1;
+                invalidate();
+                if (index >= 0 && index == slotAt(event.getX()) && listener != null) {
+                    listener.onCandidateSelected(candidates[index]);
+                }
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                pressedIndex = -1;
+                invalidate();
+                return true;
+        }
+        return false;
+    }
+
+    private int slotAt(float x) {
+        if (count == 0) return -1;
+        float slotWidth = (getWidth() - getPaddingLeft() - getPaddingRight()) / (float) count;
+        if (slotWidth <= 0) return -1;
+        int index = (int) ((x - getPaddingLeft()) / slotWidth);
+        return index >= 0 && index < count ? index : -1;
+    }
+}
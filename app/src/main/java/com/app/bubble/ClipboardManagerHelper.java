@@ -4,11 +4,15 @@ import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Manages clipboard history for the custom keyboard.
@@ -17,19 +21,41 @@ import java.util.List;
  */
 public class ClipboardManagerHelper {
 
-    private static ClipboardManagerHelper instance;
+    // Volatile: getIfLoaded() reads it without the lock a loading getInstance() holds
+    private static volatile ClipboardManagerHelper instance;
     private ClipboardManager systemClipboard;
     private SharedPreferences prefs;
+    // Main thread only once the helper is published (the constructor fills it before that)
     private List<String> clipHistory;
     private Context mContext; 
+    // Main thread: whether the system clipboard was checked since the history was loaded
+    private boolean systemClipSynced = false;
     
     // Variable to blacklist the item we just deleted so it doesn't auto-add back from system clipboard
     private String lastDeletedText = null;
+
+    // NEW: Live auto-save entry. Updated in memory per keystroke, written after SESSION_IDLE_MS or when finished
+    private String sessionClip = null;
+    private boolean sessionDirty = false;
+    private final Handler persistHandler = new Handler(Looper.getMainLooper());
+    private final Runnable persistRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (sessionDirty) {
+                sessionDirty = false;
+                saveHistory();
+            }
+        }
+    };
     
     private static final String PREFS_NAME = "BubbleClipboardPrefs";
     private static final String KEY_HISTORY = "ClipHistoryString";
     private static final int MAX_HISTORY_SIZE = 10;
     private static final String DELIMITER = "#####"; 
+    private static final long SESSION_IDLE_MS = 2000;
+
+    // NEW: Clip texts waiting to be learned, by language code. One background task learns them all (guarded by itself)
+    private final Map<String, StringBuilder> pendingLearning = new LinkedHashMap<>();
 
     private ClipboardManagerHelper(Context context) {
         this.mContext = context;
@@ -37,17 +63,59 @@ public class ClipboardManagerHelper {
         prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         clipHistory = new ArrayList<>();
         
+        // Storage only: the constructor may run on a background thread, so the system clipboard
+        // (which changes the history) is synced by getInstance() on the main thread
         loadHistory();
-        syncWithSystemClipboard();
     }
 
-    public static synchronized ClipboardManagerHelper getInstance(Context context) {
+    /**
+     * Returns the helper, loading the history if needed. Main thread only: the first call also adds
+     * the current system clip to the history.
+     */
+    public static ClipboardManagerHelper getInstance(Context context) {
+        ClipboardManagerHelper helper = load(context);
+        if (!helper.systemClipSynced) {
+            helper.systemClipSynced = true;
+            helper.syncWithSystemClipboard();
+        }
+        return helper;
+    }
+
+    private static synchronized ClipboardManagerHelper load(Context context) {
         if (instance == null) {
             instance = new ClipboardManagerHelper(context);
         }
         return instance;
     }
 
+    /**
+     * NEW: Loads the history in the background (IME start), so the first use doesn't read storage.
+     * Only the stored history is read there; the system clipboard is synced back on the main thread.
+     */
+    public static void prewarm(final Context context) {
+        if (instance != null) return;
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        TaskScheduler.submit(TaskScheduler.LANE_BACKGROUND, new Runnable() {
+            @Override
+            public void run() {
+                load(context);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        getInstance(context);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * NEW: The helper if its history is loaded, otherwise null (never waits for storage). Main thread only.
+     */
+    public static ClipboardManagerHelper getIfLoaded() {
+        return instance;
+    }
+
     /**
      * Checks if the system clipboard has new text and adds it to our history.
      */
@@ -93,33 +161,90 @@ public class ClipboardManagerHelper {
         saveHistory();
 
         // 2. FIX: Learn Vocabulary in Background (Prevents Crash on Large Copy)
-        new Thread(new Runnable() {
+        learnLater(text);
+    }
+
+    /**
+     * NEW: Sets the text of the live session clip (Real-Time Saving), kept at the top of the history.
+     * Memory only: the history is saved once typing pauses and nothing is learned until finishSessionClip().
+     * An empty text removes the entry.
+     */
+    public void updateSessionClip(String text) {
+        if (sessionClip != null) {
+            clipHistory.remove(sessionClip);
+        }
+        if (text == null || text.trim().isEmpty()) {
+            sessionClip = null;
+        } else {
+            clipHistory.remove(text);
+            clipHistory.add(0, text);
+            if (clipHistory.size() > MAX_HISTORY_SIZE) {
+                clipHistory.remove(clipHistory.size() - 1);
+            }
+            sessionClip = text;
+        }
+        sessionDirty = true;
+        persistHandler.removeCallbacks(persistRunnable);
+        persistHandler.postDelayed(persistRunnable, SESSION_IDLE_MS);
+    }
+
+    /**
+     * NEW: Ends the session clip (Enter, saving turned off, field left): saves it now and learns its words once.
+     */
+    public void finishSessionClip() {
+        persistHandler.removeCallbacks(persistRunnable);
+        persistRunnable.run();
+        final String text = sessionClip;
+        sessionClip = null;
+        if (text == null) return;
+
+        learnLater(text);
+    }
+
+    /**
+     * Adds a text to the pending learning batch of the active language. Only the first text of a batch queues
+     * a task; texts added before it runs are learned with it (one tokenizer pass, one journal write per
+     * language), so copies never pile up tasks.
+     * A text written in another script than the active language (e.g. an English clip while typing Hindi)
+     * is not learned: it would only add foreign words to that language's model.
+     */
+    private void learnLater(String text) {
+        String language = PredictionEngine.getActiveLanguage();
+        if (LanguageUtils.dominantScript(text) != LanguageUtils.scriptOf(language)) return;
+
+        synchronized (pendingLearning) {
+            boolean queued = !pendingLearning.isEmpty();
+            StringBuilder batch = pendingLearning.get(language);
+            if (batch == null) {
+                batch = new StringBuilder();
+                pendingLearning.put(language, batch);
+            }
+            batch.append(text).append('\n');
+            if (queued) return;
+        }
+        TaskScheduler.submit(TaskScheduler.LANE_BACKGROUND, new Runnable() {
             @Override
             public void run() {
-                // Split sentence into words by whitespace
-                String[] words = text.split("\\s+");
-                List<String> validWords = new ArrayList<>();
-                
-                for (String word : words) {
-                    if (word.length() > 1) {
-                        // Regex to remove non-alphanumeric (keep simple logic)
-                        String cleanWord = word.replaceAll("[^a-zA-Z0-9]", "");
-                        if (!cleanWord.isEmpty()) {
-                            validWords.add(cleanWord);
-                        }
-                    }
+                Map<String, StringBuilder> batches;
+                synchronized (pendingLearning) {
+                    batches = new LinkedHashMap<>(pendingLearning);
+                    pendingLearning.clear();
+                }
+                for (Map.Entry<String, StringBuilder> batch : batches.entrySet()) {
+                    // Streaming tokenizer (all scripts) + word counts, one journal write for the whole batch
+                    PredictionEngine.getInstance(mContext, batch.getKey()).learnText(batch.getValue());
                 }
-                
-                // Batch learn all collected words (Single Disk Write)
-                PredictionEngine.getInstance(mContext).learnWordsBatch(validWords);
             }
-        }).start();
+        });
     }
 
     /**
      * Permanently delete an item (Swipe-to-Delete)
      */
     public void deleteItem(String text) {
+        if (text.equals(sessionClip)) {
+            sessionClip = null;
+        }
         if (clipHistory.contains(text)) {
             // Mark this text as "Just Deleted" so sync() ignores it
             lastDeletedText = text;
@@ -151,6 +276,7 @@ public class ClipboardManagerHelper {
     }
 
     public void clearHistory() {
+        sessionClip = null;
         clipHistory.clear();
         saveHistory();
     }
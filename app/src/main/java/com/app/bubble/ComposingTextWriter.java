@@ -0,0 +1,85 @@
+package com.app.bubble;
+
+import android.view.inputmethod.ExtractedText;
+import android.view.inputmethod.ExtractedTextRequest;
+import android.view.inputmethod.InputConnection;
+
+/**
+ * Keeps a text that is rewritten as a whole (a live translation) as composing text in the editor,
+ * sending only what changed between two versions.
+ *
+ * The common prefix and suffix of the old and new text stay in the editor; the middle is replaced with
+ * one setComposingText inside a batch edit. This needs the editor offset of the text, read once with
+ * getExtractedText(); editors that don't report it get the whole text rewritten instead.
+ */
+public class ComposingTextWriter {
+
+    private String current = "";
+    // Editor offset of 'current' (-1: unknown)
+    private int start = -1;
+
+    /**
+     * Replaces the text written so far (in front of the cursor) with 'next'; the cursor ends after it.
+     */
+    public void update(InputConnection ic, String next) {
+        if (next.equals(current)) return;
+
+        if (current.isEmpty()) {
+            start = -1;
+            ExtractedText et = ic.getExtractedText(new ExtractedTextRequest(), 0);
+            if (et != null && et.selectionStart >= 0) {
+                start = et.startOffset + Math.min(et.selectionStart, et.selectionEnd);
+            }
+        }
+
+        ic.beginBatchEdit();
+        if (start < 0 || current.isEmpty()) {
+            ic.setComposingText(next, 1);
+        } else {
+            int max = Math.min(current.length(), next.length());
+            int prefix = 0;
+            while (prefix < max && current.charAt(prefix) == next.charAt(prefix)) prefix++;
+            int suffix = 0;
+            while (suffix < max - prefix
+                    && current.charAt(current.length() - 1 - suffix) == next.charAt(next.length() - 1 - suffix)) {
+                suffix++;
+            }
+            // Don't split a surrogate pair
+            if (prefix > 0 && Character.isHighSurrogate(next.charAt(prefix - 1))) prefix--;
+            if (suffix > 0 && Character.isLowSurrogate(next.charAt(next.length() - suffix))) suffix--;
+
+            int changedStart = start + prefix;
+            int changedEnd = start + current.length() - suffix;
+            // The cursor goes to the changed part, which alone becomes composing and is replaced
+            ic.setSelection(changedEnd, changedEnd);
+            ic.setComposingRegion(changedStart, changedEnd);
+            ic.setComposingText(next.substring(prefix, next.length() - suffix), 1);
+            // Back to the whole text composing, cursor at its end
+            int end = start + next.length();
+            ic.setComposingRegion(start, end);
+            ic.setSelection(end, end);
+        }
+        ic.endBatchEdit();
+        current = next;
+    }
+
+    /**
+     * Leaves the text in the editor as plain text and starts over.
+     */
+    public void finish(InputConnection ic) {
+        if (!current.isEmpty()) ic.finishComposingText();
+        reset();
+    }
+
+    /**
+     * Forgets the text (the editor already finished it, or the cursor left it).
+     */
+    public void reset() {
+        current = "";
+        start = -1;
+    }
+
+    public boolean hasText() {
+        return !current.isEmpty();
+    }
+}
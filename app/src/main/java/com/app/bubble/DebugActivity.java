@@ -0,0 +1,54 @@
+package com.app.bubble;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+import android.widget.TextView;
+
+/**
+ * Shows the keystroke latency histograms recorded by the keyboard (see LatencyRecorder) and the
+ * background task lanes (see TaskScheduler).
+ * The keyboard service runs in the app process, so the numbers are read directly.
+ */
+public class DebugActivity extends Activity {
+
+    private TextView reportText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_debug);
+
+        reportText = findViewById(R.id.debug_latency_report);
+
+        findViewById(R.id.debug_refresh_button).setOnClickListener(v -> refreshReport());
+
+        findViewById(R.id.debug_reset_button).setOnClickListener(v -> {
+            LatencyRecorder.reset();
+            TaskScheduler.resetMetrics();
+            refreshReport();
+        });
+
+        findViewById(R.id.debug_export_button).setOnClickListener(v -> {
+            Intent shareIntent = new Intent(Intent.ACTION_SEND);
+            shareIntent.setType("text/plain");
+            shareIntent.putExtra(Intent.EXTRA_SUBJECT, "Bubble keystroke latency");
+            shareIntent.putExtra(Intent.EXTRA_TEXT, buildReport());
+            startActivity(Intent.createChooser(shareIntent, "Export"));
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refreshReport();
+    }
+
+    private void refreshReport() {
+        reportText.setText(buildReport());
+    }
+
+    private String buildReport() {
+        return LatencyRecorder.report() + "\n" + TaskScheduler.report();
+    }
+}
@@ -0,0 +1,96 @@
+package com.app.bubble;
+
+/**
+ * Threshold-aware edit distance for auto-correction (case-insensitive).
+ * Only the diagonal band of affordable insertions/deletions is computed, the loop stops as soon as
+ * the rows are above the threshold, and the row buffers are reused between calls.
+ * A comparison therefore allocates nothing. Not thread-safe: keep one instance per thread.
+ * UPDATED: weightedDistance() prices substitutions by key distance (KeyProximity) and counts swapped
+ * neighbours as one slip; the plain Levenshtein variant had no callers left and was removed.
+ */
+public final class EditDistance {
+
+    private int[] prev = new int[32];
+    private int[] curr = new int[32];
+    private int[] prev2 = new int[32];
+
+    /**
+     * Keyboard-aware distance of a typed word to a dictionary word, in KeyProximity cost units
+     * (EDIT_COST per insertion/deletion, key-distance based substitutions, TRANSPOSE_COST per swap of
+     * two adjacent letters). Returns the cost if it is <= maxCost, otherwise maxCost + 1.
+     * 'keys' may be null, then every substitution costs a full edit.
+     */
+    public int weightedDistance(CharSequence typed, CharSequence word, int maxCost, KeyProximity keys) {
+        int n = typed.length();
+        int m = word.length();
+        int over = maxCost + 1;
+        int edit = KeyProximity.EDIT_COST;
+        // Number of insertions/deletions affordable: the width of the band
+        int band = maxCost / edit;
+
+        if (Math.abs(n - m) > band) return over;
+        if (n == 0 || m == 0) {
+            int cost = Math.max(n, m) * edit;
+            return cost <= maxCost ? cost : over;
+        }
+
+        ensureCapacity(m + 1);
+        int[] pp = prev2;
+        int[] p = prev;
+        int[] c = curr;
+
+        for (int j = 0; j <= m; j++) {
+            p[j] = j <= band ? j * edit : over;
+        }
+
+        int previousRowMin = 0;
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - band);
+            int to = Math.min(m, i + band);
+
+            c[from - 1] = (from == 1) ? (i <= band ? i * edit : over) : over;
+            int rowMin = c[from - 1];
+            char ca = Character.toLowerCase(typed.charAt(i - 1));
+            char caBefore = i > 1 ? Character.toLowerCase(typed.charAt(i - 2)) : 0;
+
+            for (int j = from; j <= to; j++) {
+                char cb = Character.toLowerCase(word.charAt(j - 1));
+                int cost = ca == cb ? 0 : keys != null ? keys.substitutionCost(ca, cb) : edit;
+                int v = p[j - 1] + cost;
+                int del = p[j] + edit;
+                int ins = c[j - 1] + edit;
+                if (del < v) v = del;
+                if (ins < v) v = ins;
+                if (i > 1 && j > 1 && ca != cb && ca == Character.toLowerCase(word.charAt(j - 2)) && caBefore == cb) {
+                    int swap = pp[j - 2] + KeyProximity.TRANSPOSE_COST;
+                    if (swap < v) v = swap;
+                }
+                if (v > over) v = over;
+                c[j] = v;
+                if (v < rowMin) rowMin = v;
+            }
+            if (to < m) c[to + 1] = over;
+
+            // A swap can still reach back over one row, so stop only when two rows in a row are out of reach
+            if (rowMin > maxCost && previousRowMin > maxCost) return over;
+            previousRowMin = rowMin;
+
+            int[] tmp = pp;
+            pp = p;
+            p = c;
+            c = tmp;
+        }
+
+        int result = p[m];
+        return result <= maxCost ? result : over;
+    }
+
+    private void ensureCapacity(int size) {
+        if (prev.length < size) {
+            int cap = Math.max(size, prev.length * 2);
+            prev = new int[cap];
+            curr = new int[cap];
+            prev2 = new int[cap];
+        }
+    }
+}
@@ -57,8 +57,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class FloatingTranslatorService extends Service {
 
@@ -83,11 +81,12 @@ public class FloatingTranslatorService extends Service {
     private int closeRegionHeight;
 
     // --- LOGIC VARS ---
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
     private Handler handler = new Handler(Looper.getMainLooper());
     
     private String latestOcrText = ""; 
     private String latestTranslation = "";
+    // Bumped per translate or refine request (main thread), so a late result can't replace a newer one
+    private int resultGeneration = 0;
     
     // Manual Copy Accumulator
     private StringBuilder globalTextAccumulator = new StringBuilder();
@@ -363,13 +362,15 @@ public class FloatingTranslatorService extends Service {
         final String targetCode = languageCodes[targetIndex];
 
         // Background Thread for API
-        executor.execute(new Runnable() {
+        final int generation = ++resultGeneration;
+        TaskScheduler.submitReplaceable(TaskScheduler.LANE_INTERACTIVE, "floating-translation", new Runnable() {
             @Override
             public void run() {
                 final String result = TranslateApi.translate(srcCode, targetCode, text);
                 handler.post(new Runnable() {
                     @Override
                     public void run() {
+                        if (generation != resultGeneration) return;
                         if (result != null) {
                             latestTranslation = result;
                             showResultPopup(); // SHOW THE POPUP
@@ -670,9 +671,13 @@ public class FloatingTranslatorService extends Service {
                 return;
             }
             Toast.makeText(this, "Refining...", Toast.LENGTH_SHORT).show();
-            executor.execute(() -> {
-                String refined = GeminiApi.refine(latestTranslation, currentTargetLang, apiKey);
+            final int generation = ++resultGeneration;
+            final String toRefine = latestTranslation;
+            final String targetLang = currentTargetLang;
+            TaskScheduler.submitReplaceable(TaskScheduler.LANE_INTERACTIVE, "floating-refine", () -> {
+                String refined = GeminiApi.refine(toRefine, targetLang, apiKey);
                 handler.post(() -> {
+                    if (generation != resultGeneration || popupView == null) return;
                     if (refined != null) {
                         latestTranslation = refined;
                         TextView tv = popupView.findViewById(R.id.popup_translated_text);
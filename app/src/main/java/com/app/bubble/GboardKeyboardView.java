@@ -1,37 +1,668 @@
 package com.app.bubble;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.inputmethodservice.Keyboard;
 import android.inputmethodservice.KeyboardView;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.Gravity;
 import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.widget.PopupWindow;
 
-public class GboardKeyboardView extends KeyboardView {
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws and handles a Keyboard (parsed from res/xml by android.inputmethodservice.Keyboard) without
+ * the deprecated KeyboardView, which redraws every key on each press and shift toggle.
+ *
+ * - All keys are pre-rendered into two cached layers, normal and pressed. A frame only copies the
+ *   normal layer plus the pressed key's rectangle of the pressed layer.
+ * - A press or release invalidates one key; a shift toggle re-renders only the keys whose look changes.
+ * - Touches are resolved through a grid of small cells that each know their key (O(1) hit-test).
+ * Also does key repeat, long-press popup keyboards and glide typing (see GestureListener).
+ */
+public class GboardKeyboardView extends View {
+
+    /**
+     * NEW: Receives finished glides (points in keyboard coordinates, i.e. without the view padding).
+     */
+    public interface GestureListener {
+        void onGesture(float[] xs, float[] ys, int count);
+    }
+
+    private static final int[] PRESSED_STATE = { android.R.attr.state_pressed };
+    private static final int REPEAT_START_DELAY = 400;
+    private static final int REPEAT_INTERVAL = 50;
+    // Hit-test cells are this many times smaller than the smallest key
+    private static final int GRID_SUBDIVISION = 4;
+    // A press that starts on a letter and moves this far (in widths of that key) becomes a glide
+    private static final float GESTURE_START_DISTANCE = 0.7f;
+    private static final int INITIAL_POINTS = 128;
+
+    private Keyboard keyboard;
+    private Keyboard.Key[] keys = new Keyboard.Key[0];
+    private KeyboardView.OnKeyboardActionListener actionListener;
+
+    // --- Rendering ---
+    private final Drawable keyBackground;
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float keyTextSize;
+    private final float labelTextSize;
+    private final Rect keyBackgroundPadding = new Rect();
+    private final Rect keyRect = new Rect();
+    private Bitmap keyLayer;
+    private Bitmap pressedLayer;
+    private final Canvas layerCanvas = new Canvas();
+    private boolean layersDirty = true;
+
+    // --- Hit-test grid (keyboard coordinates) ---
+    private int[] grid = new int[0];
+    private int gridColumns;
+    private int gridRows;
+    private int cellWidth = 1;
+    private int cellHeight = 1;
+
+    // --- Touch ---
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private int currentKey = -1;
+    private int activePointerId = -1;
+    // True once the current key was sent on press (repeatable keys) or handed to a popup keyboard
+    private boolean keyHandled = false;
+    // Time (uptimeMillis) of the touch event being handled, for LatencyRecorder.STAGE_TOUCH
+    private long touchEventTime;
+    private PopupWindow popupKeyboard;
+
+    private final Runnable repeatRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (currentKey < 0) return;
+            sendKey(currentKey, -1);
+            handler.postDelayed(this, REPEAT_INTERVAL);
+        }
+    };
+
+    private final Runnable longPressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (currentKey >= 0 && openPopupKeyboard(keys[currentKey])) {
+                keyHandled = true;
+                setCurrentKey(-1);
+            }
+        }
+    };
+
+    // --- Glide typing ---
+    private GestureListener gestureListener;
+    private boolean tracking = false;
+    private boolean gesturing = false;
+    private float startX, startY;
+    private float startDistance;
+    private float[] xs = new float[INITIAL_POINTS];
+    private float[] ys = new float[INITIAL_POINTS];
+    private int pointCount = 0;
+    private final Path trail = new Path();
+    private final Paint trailPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
 
     public GboardKeyboardView(Context context, AttributeSet attrs) {
-        super(context, attrs);
+        this(context, attrs, 0);
     }
 
     public GboardKeyboardView(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
+        keyBackground = context.getDrawable(R.drawable.key_selector);
+        keyTextSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 22, getResources().getDisplayMetrics());
+        labelTextSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 14, getResources().getDisplayMetrics());
+        labelPaint.setColor(Color.BLACK);
+        labelPaint.setTextAlign(Paint.Align.CENTER);
+        initTrailPaint();
+    }
+
+    private void initTrailPaint() {
+        trailPaint.setColor(Color.parseColor("#4285F4"));
+        trailPaint.setAlpha(160);
+        trailPaint.setStyle(Paint.Style.STROKE);
+        trailPaint.setStrokeWidth(12f);
+        trailPaint.setStrokeCap(Paint.Cap.ROUND);
+        trailPaint.setStrokeJoin(Paint.Join.ROUND);
+    }
+
+    // --- Public API (same names as KeyboardView where one exists) ---
+
+    public void setKeyboard(Keyboard keyboard) {
+        cancelPress();
+        dismissPopupKeyboard();
+        this.keyboard = keyboard;
+        List<Keyboard.Key> list = keyboard.getKeys();
+        keys = list.toArray(new Keyboard.Key[list.size()]);
+        buildGrid();
+        layersDirty = true;
+        requestLayout();
+        invalidate();
+    }
+
+    public Keyboard getKeyboard() {
+        return keyboard;
+    }
+
+    public void setOnKeyboardActionListener(KeyboardView.OnKeyboardActionListener listener) {
+        this.actionListener = listener;
+    }
+
+    public void setGestureListener(GestureListener listener) {
+        this.gestureListener = listener;
+    }
+
+    /**
+     * Shifts the current keyboard and redraws only the keys whose look depends on it
+     * (letter labels and the shift key itself).
+     */
+    public void setShifted(boolean shifted) {
+        if (keyboard == null || !keyboard.setShifted(shifted)) return;
+        for (int i = 0; i < keys.length; i++) {
+            Keyboard.Key key = keys[i];
+            if (key.sticky || key.modifier || isCaseSensitive(key.label)) redrawKey(i);
+        }
+    }
+
+    /** Re-renders every key (e.g. after changing labels of the current keyboard). */
+    public void invalidateAllKeys() {
+        layersDirty = true;
+        invalidate();
+    }
+
+    /** Closes the popup keyboard, if one is open. */
+    public void closing() {
+        cancelPress();
+        dismissPopupKeyboard();
+    }
+
+    // --- Layout and drawing ---
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (keyboard == null) {
+            setMeasuredDimension(getPaddingLeft() + getPaddingRight(), getPaddingTop() + getPaddingBottom());
+            return;
+        }
+        int width = keyboard.getMinWidth() + getPaddingLeft() + getPaddingRight();
+        if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.UNSPECIFIED) {
+            width = Math.min(width, MeasureSpec.getSize(widthMeasureSpec));
+        }
+        setMeasuredDimension(width, keyboard.getHeight() + getPaddingTop() + getPaddingBottom());
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        releaseLayers();
+        layersDirty = true;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        closing();
+        releaseLayers();
+        layersDirty = true;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (keyboard == null || getWidth() == 0 || getHeight() == 0) return;
+        if (layersDirty) renderLayers();
+
+        canvas.drawBitmap(keyLayer, 0, 0, null);
+        if (currentKey >= 0) {
+            setKeyRect(keys[currentKey]);
+            canvas.drawBitmap(pressedLayer, keyRect, keyRect, null);
+        }
+        if (gesturing) canvas.drawPath(trail, trailPaint);
+    }
+
+    private void renderLayers() {
+        if (keyLayer == null) {
+            keyLayer = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+            pressedLayer = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+        } else {
+            keyLayer.eraseColor(Color.TRANSPARENT);
+            pressedLayer.eraseColor(Color.TRANSPARENT);
+        }
+        for (Keyboard.Key key : keys) {
+            renderKey(keyLayer, key, false);
+            renderKey(pressedLayer, key, true);
+        }
+        layersDirty = false;
+    }
+
+    /**
+     * Re-renders one key in both layers and invalidates just its rectangle.
+     */
+    private void redrawKey(int index) {
+        if (index < 0 || index >= keys.length) return;
+        Keyboard.Key key = keys[index];
+        if (!layersDirty && keyLayer != null) {
+            renderKey(keyLayer, key, false);
+            renderKey(pressedLayer, key, true);
+        }
+        invalidateKey(index);
+    }
+
+    private void renderKey(Bitmap layer, Keyboard.Key key, boolean pressed) {
+        Canvas canvas = layerCanvas;
+        canvas.setBitmap(layer);
+        setKeyRect(key);
+        canvas.save();
+        canvas.clipRect(keyRect.left, keyRect.top, keyRect.right, keyRect.bottom);
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+
+        keyBackground.setState(pressed ? PRESSED_STATE : key.getCurrentDrawableState());
+        keyBackground.setBounds(keyRect.left, keyRect.top, keyRect.right, keyRect.bottom);
+        keyBackground.draw(canvas);
+        keyBackground.getPadding(keyBackgroundPadding);
+
+        float centerX = (keyRect.left + keyBackgroundPadding.left + keyRect.right - keyBackgroundPadding.right) / 2f;
+        float centerY = (keyRect.top + keyBackgroundPadding.top + keyRect.bottom - keyBackgroundPadding.bottom) / 2f;
+        String label = labelOf(key);
+        if (label != null) {
+            // Single characters are large, words ("COPY", "?123") small and bold, like KeyboardView
+            boolean word = label.length() > 1 && key.codes.length < 2;
+            labelPaint.setTextSize(word ? labelTextSize : keyTextSize);
+            labelPaint.setTypeface(word ? Typeface.DEFAULT_BOLD : Typeface.DEFAULT);
+            canvas.drawText(label, centerX, centerY - (labelPaint.descent() + labelPaint.ascent()) / 2f, labelPaint);
+        } else if (key.icon != null) {
+            int w = key.icon.getIntrinsicWidth();
+            int h = key.icon.getIntrinsicHeight();
+            int left = Math.round(centerX - w / 2f);
+            int top = Math.round(centerY - h / 2f);
+            key.icon.setBounds(left, top, left + w, top + h);
+            key.icon.draw(canvas);
+        }
+        canvas.restore();
+        canvas.setBitmap(null);
+    }
+
+    private String labelOf(Keyboard.Key key) {
+        if (key.label == null) return null;
+        String label = key.label.toString();
+        if (keyboard.isShifted() && isCaseSensitive(label)) return label.toUpperCase();
+        return label;
+    }
+
+    private static boolean isCaseSensitive(CharSequence label) {
+        return label != null && label.length() < 3 && Character.isLowerCase(label.charAt(0));
+    }
+
+    private void setKeyRect(Keyboard.Key key) {
+        int left = key.x + getPaddingLeft();
+        int top = key.y + getPaddingTop();
+        keyRect.set(left, top, left + key.width, top + key.height);
+    }
+
+    private void invalidateKey(int index) {
+        if (index < 0 || index >= keys.length) return;
+        setKeyRect(keys[index]);
+        invalidate(keyRect.left, keyRect.top, keyRect.right, keyRect.bottom);
     }
 
+    private void releaseLayers() {
+        if (keyLayer != null) keyLayer.recycle();
+        if (pressedLayer != null) pressedLayer.recycle();
+        keyLayer = null;
+        pressedLayer = null;
+    }
+
+    // --- Hit-testing ---
+
+    /**
+     * Maps every cell (GRID_SUBDIVISION cells per smallest key) to the key under its centre,
+     * or to the nearest key for cells in gaps.
+     */
+    private void buildGrid() {
+        int minWidth = Integer.MAX_VALUE;
+        int minHeight = Integer.MAX_VALUE;
+        for (Keyboard.Key key : keys) {
+            if (key.width > 0) minWidth = Math.min(minWidth, key.width);
+            if (key.height > 0) minHeight = Math.min(minHeight, key.height);
+        }
+        if (keys.length == 0 || minWidth == Integer.MAX_VALUE || minHeight == Integer.MAX_VALUE) {
+            grid = new int[0];
+            gridColumns = 0;
+            gridRows = 0;
+            return;
+        }
+        cellWidth = Math.max(1, minWidth / GRID_SUBDIVISION);
+        cellHeight = Math.max(1, minHeight / GRID_SUBDIVISION);
+        gridColumns = (keyboard.getMinWidth() + cellWidth - 1) / cellWidth;
+        gridRows = (keyboard.getHeight() + cellHeight - 1) / cellHeight;
+        grid = new int[gridColumns * gridRows];
+
+        for (int row = 0; row < gridRows; row++) {
+            int cy = row * cellHeight + cellHeight / 2;
+            for (int col = 0; col < gridColumns; col++) {
+                int cx = col * cellWidth + cellWidth / 2;
+                int best = 0;
+                long bestDistance = Long.MAX_VALUE;
+                for (int i = 0; i < keys.length; i++) {
+                    long d = distanceToKey(keys[i], cx, cy);
+                    if (d < bestDistance) {
+                        best = i;
+                        bestDistance = d;
+                        if (d == 0) break;
+                    }
+                }
+                grid[row * gridColumns + col] = best;
+            }
+        }
+    }
+
+    /**
+     * Key under a point in keyboard coordinates (the nearest key outside of all keys), or -1.
+     * The cell's key is exact except near key edges, where the neighbouring cells' keys are checked.
+     */
+    private int keyAt(int x, int y) {
+        if (grid.length == 0) return -1;
+        int col = Math.max(0, Math.min(gridColumns - 1, x / cellWidth));
+        int row = Math.max(0, Math.min(gridRows - 1, y / cellHeight));
+        int index = grid[row * gridColumns + col];
+        if (distanceToKey(keys[index], x, y) == 0) return index;
+
+        for (int r = Math.max(0, row - 1); r <= Math.min(gridRows - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(gridColumns - 1, col + 1); c++) {
+                int other = grid[r * gridColumns + c];
+                if (distanceToKey(keys[other], x, y) == 0) return other;
+            }
+        }
+        return index;
+    }
+
+    /** Squared distance from a point to a key's rectangle (0 inside). */
+    private static long distanceToKey(Keyboard.Key key, int x, int y) {
+        long dx = x < key.x ? key.x - x : (x >= key.x + key.width ? x - (key.x + key.width - 1) : 0);
+        long dy = y < key.y ? key.y - y : (y >= key.y + key.height ? y - (key.y + key.height - 1) : 0);
+        return dx * dx + dy * dy;
+    }
+
+    // --- Touch handling ---
+
     @Override
     public boolean onTouchEvent(MotionEvent me) {
-        // 1. Let the standard keyboard process the touch (highlighting, selecting key)
-        boolean result = super.onTouchEvent(me);
-
-        // 2. INTERCEPT: If the user lifts their finger (ACTION_UP)
-        if (me.getAction() == MotionEvent.ACTION_UP) {
-            // FIX: We use 'post' to delay the closing slightly. 
-            // This ensures the "Key Pressed" event fires BEFORE we kill the popup.
-            post(new Runnable() {
-                @Override
-                public void run() {
-                    closing(); 
+        if (keyboard == null) return false;
+        touchEventTime = me.getEventTime();
+
+        // NEW: Glide typing. Taps are handled below; once a press turns into a glide,
+        // the press is cancelled and the path is collected instead.
+        if (gestureListener != null && trackGesture(me)) return true;
+
+        int index = me.getActionIndex();
+        switch (me.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                if (popupKeyboard != null && popupKeyboard.isShowing()) {
+                    // A touch outside the popup closes it
+                    dismissPopupKeyboard();
+                    activePointerId = -1;
+                    return true;
+                }
+                activePointerId = me.getPointerId(0);
+                pressKey(me.getX(), me.getY());
+                return true;
+
+            case MotionEvent.ACTION_POINTER_DOWN:
+                // Fast typing: the new finger finishes the previous key, like a release
+                if (activePointerId < 0) return true;
+                releaseKey();
+                activePointerId = me.getPointerId(index);
+                pressKey(me.getX(index), me.getY(index));
+                return true;
+
+            case MotionEvent.ACTION_MOVE: {
+                int pointer = activePointerId >= 0 ? me.findPointerIndex(activePointerId) : -1;
+                if (pointer < 0 || keyHandled) return true;
+                int key = keyAt((int) me.getX(pointer) - getPaddingLeft(), (int) me.getY(pointer) - getPaddingTop());
+                if (key != currentKey) {
+                    // Sliding to another key moves the press there; repeat and long press stop
+                    handler.removeCallbacks(repeatRunnable);
+                    handler.removeCallbacks(longPressRunnable);
+                    setCurrentKey(key);
+                }
+                return true;
+            }
+
+            case MotionEvent.ACTION_POINTER_UP:
+                if (me.getPointerId(index) != activePointerId) return true;
+                releaseKey();
+                activePointerId = -1;
+                return true;
+
+            case MotionEvent.ACTION_UP:
+                if (activePointerId >= 0) releaseKey();
+                activePointerId = -1;
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                cancelPress();
+                activePointerId = -1;
+                return true;
+        }
+        return true;
+    }
+
+    private void pressKey(float viewX, float viewY) {
+        int key = keyAt((int) viewX - getPaddingLeft(), (int) viewY - getPaddingTop());
+        keyHandled = false;
+        setCurrentKey(key);
+        if (key < 0) return;
+
+        Keyboard.Key k = keys[key];
+        if (actionListener != null) actionListener.onPress(k.codes[0]);
+        if (k.repeatable) {
+            // Repeatable keys type on press, then repeat while held
+            sendKey(key, touchEventTime);
+            keyHandled = true;
+            handler.postDelayed(repeatRunnable, REPEAT_START_DELAY);
+        } else if (k.popupResId != 0) {
+            handler.postDelayed(longPressRunnable, ViewConfiguration.getLongPressTimeout());
+        }
+    }
+
+    private void releaseKey() {
+        handler.removeCallbacks(repeatRunnable);
+        handler.removeCallbacks(longPressRunnable);
+        int key = currentKey;
+        setCurrentKey(-1);
+        if (key < 0) return;
+        if (!keyHandled) sendKey(key, touchEventTime);
+        if (actionListener != null) actionListener.onRelease(keys[key].codes[0]);
+        keyHandled = false;
+    }
+
+    /**
+     * Drops the current press without typing it.
+     */
+    private void cancelPress() {
+        handler.removeCallbacks(repeatRunnable);
+        handler.removeCallbacks(longPressRunnable);
+        setCurrentKey(-1);
+        keyHandled = false;
+    }
+
+    private void setCurrentKey(int key) {
+        if (key == currentKey) return;
+        int previous = currentKey;
+        currentKey = key;
+        invalidateKey(previous);
+        invalidateKey(key);
+    }
+
+    /**
+     * Types a key. 'eventTime' is the uptimeMillis of the touch that typed it, or -1 for repeats.
+     */
+    private void sendKey(int index, long eventTime) {
+        if (actionListener == null) return;
+        if (eventTime >= 0) {
+            LatencyRecorder.recordMicros(LatencyRecorder.STAGE_TOUCH, (SystemClock.uptimeMillis() - eventTime) * 1000);
+        }
+        Keyboard.Key key = keys[index];
+        if (key.text != null) {
+            actionListener.onText(key.text);
+        } else {
+            actionListener.onKey(key.codes[0], key.codes);
+        }
+    }
+
+    // --- Popup keyboard (long press) ---
+
+    private boolean openPopupKeyboard(Keyboard.Key key) {
+        if (key.popupResId == 0 || getWindowToken() == null) return false;
+
+        GboardKeyboardView popupView = new GboardKeyboardView(getContext(), null);
+        popupView.setBackgroundColor(Color.parseColor("#E8EAED"));
+        popupView.setKeyboard(new Keyboard(getContext(), key.popupResId));
+        popupView.setOnKeyboardActionListener(new KeyboardView.OnKeyboardActionListener() {
+            @Override
+            public void onKey(int primaryCode, int[] keyCodes) {
+                if (actionListener != null) actionListener.onKey(primaryCode, keyCodes);
+                dismissPopupKeyboard();
+            }
+
+            @Override
+            public void onText(CharSequence text) {
+                if (actionListener != null) actionListener.onText(text);
+                dismissPopupKeyboard();
+            }
+
+            @Override public void onPress(int primaryCode) {}
+            @Override public void onRelease(int primaryCode) {}
+            @Override public void swipeLeft() {}
+            @Override public void swipeRight() {}
+            @Override public void swipeDown() {}
+            @Override public void swipeUp() {}
+        });
+        popupView.measure(MeasureSpec.makeMeasureSpec(getWidth(), MeasureSpec.AT_MOST),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        int width = popupView.getMeasuredWidth();
+        int height = popupView.getMeasuredHeight();
+
+        // Centred above the key, kept inside the keyboard
+        int[] location = new int[2];
+        getLocationInWindow(location);
+        int x = key.x + getPaddingLeft() + key.width / 2 - width / 2;
+        x = Math.max(0, Math.min(getWidth() - width, x));
+        int y = Math.max(0, key.y + getPaddingTop() - height);
+
+        popupKeyboard = new PopupWindow(popupView, width, height);
+        popupKeyboard.showAtLocation(this, Gravity.NO_GRAVITY, location[0] + x, location[1] + y);
+        return true;
+    }
+
+    private void dismissPopupKeyboard() {
+        if (popupKeyboard != null) {
+            popupKeyboard.dismiss();
+            popupKeyboard = null;
+        }
+    }
+
+    // --- Glide typing ---
+
+    /**
+     * Follows a single-finger press. Returns true once the event belongs to a glide.
+     */
+    private boolean trackGesture(MotionEvent me) {
+        float x = me.getX() - getPaddingLeft();
+        float y = me.getY() - getPaddingTop();
+
+        switch (me.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                int key = popupKeyboard == null ? keyAt((int) x, (int) y) : -1;
+                tracking = key >= 0 && isLetterKey(keys[key]);
+                gesturing = false;
+                pointCount = 0;
+                if (tracking) {
+                    startX = x;
+                    startY = y;
+                    startDistance = GESTURE_START_DISTANCE * keys[key].width;
+                    addPoint(x, y);
                 }
-            });
+                return false;
+
+            case MotionEvent.ACTION_MOVE:
+                if (!tracking) return false;
+                for (int h = 0; h < me.getHistorySize(); h++) {
+                    addPoint(me.getHistoricalX(h) - getPaddingLeft(), me.getHistoricalY(h) - getPaddingTop());
+                }
+                addPoint(x, y);
+                if (!gesturing) {
+                    if (Math.hypot(x - startX, y - startY) < startDistance) return false;
+                    gesturing = true;
+                    cancelPress();
+                    trail.reset();
+                    trail.moveTo(xs[0] + getPaddingLeft(), ys[0] + getPaddingTop());
+                    for (int i = 1; i < pointCount; i++) trail.lineTo(xs[i] + getPaddingLeft(), ys[i] + getPaddingTop());
+                } else {
+                    trail.lineTo(me.getX(), me.getY());
+                }
+                invalidate();
+                return true;
+
+            case MotionEvent.ACTION_UP:
+                if (!gesturing) {
+                    tracking = false;
+                    return false;
+                }
+                addPoint(x, y);
+                tracking = false;
+                gesturing = false;
+                activePointerId = -1;
+                trail.reset();
+                invalidate();
+                gestureListener.onGesture(xs, ys, pointCount);
+                return true;
+
+            case MotionEvent.ACTION_POINTER_DOWN:
+                // Multi-touch is typing, not gliding
+                if (gesturing) return true;
+                tracking = false;
+                return false;
+
+            case MotionEvent.ACTION_CANCEL:
+                boolean consumed = gesturing;
+                tracking = false;
+                gesturing = false;
+                trail.reset();
+                invalidate();
+                return consumed;
+
+            default:
+                return gesturing;
         }
+    }
+
+    private static boolean isLetterKey(Keyboard.Key key) {
+        return key.codes != null && key.codes.length > 0 && Character.isLetter(key.codes[0]);
+    }
 
-        return result;
+    private void addPoint(float x, float y) {
+        if (pointCount == xs.length) {
+            xs = Arrays.copyOf(xs, pointCount * 2);
+            ys = Arrays.copyOf(ys, pointCount * 2);
+        }
+        xs[pointCount] = x;
+        ys[pointCount] = y;
+        pointCount++;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,369 @@
+package com.app.bubble;
+
+import android.inputmethodservice.Keyboard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Glide-typing decoder: turns a finger path over the letter keys into the most likely words.
+ *
+ * 1. The path is resampled at equal distances and its sharp turns ("corners") are marked.
+ * 2. Every sample gets a distance to every letter key (in key sizes), i.e. a key-probability sequence.
+ * 3. A beam search spells words letter by letter through a Dictionary (trie-like prefix cursors).
+ *    Each next letter is aligned to the first stretch of the path, after the previous letter, that
+ *    passes over its key; letters never passed are pruned along with their whole subtree.
+ *    The samples between two letters should follow the line between their keys, so every word has to
+ *    explain the whole path; skipping a corner costs extra.
+ * 4. The complete words are ranked by path fit plus a frequency prior.
+ *
+ * The search stops at TIME_BUDGET_NANOS, so a result is always ready within one frame.
+ * Geometry is immutable; decode() allocates its own state, so one decoder may be used from any thread.
+ */
+public class GestureDecoder {
+
+    /**
+     * Prefix cursors over the words a gesture may decode to. A cursor stands for one prefix.
+     */
+    public interface Dictionary<C> {
+        C root();
+
+        /** Cursor of the prefix extended by 'c' (lower case), or null if no word starts with it. */
+        C step(C cursor, char c);
+
+        /** A word spelled exactly by the cursor's prefix, or null. */
+        String wordAt(C cursor);
+
+        /** Unigram probability of wordAt(cursor), 0 if unknown. */
+        double probability(C cursor);
+    }
+
+    private static final long TIME_BUDGET_NANOS = 12 * 1000 * 1000;
+    private static final int BEAM_WIDTH = 40;
+    private static final int MAX_WORD_LENGTH = 24;
+    private static final int MAX_SAMPLES = 160;
+    // Resampling step and key "hit" radius, in key widths
+    private static final float SAMPLE_STEP = 0.25f;
+    private static final float HIT_RADIUS = 0.9f;
+    // Spread of the key-probability model (log p = -d^2 / (2 sigma^2), d in key sizes)
+    private static final float SIGMA = 0.45f;
+    // Samples between two letters should lie on the straight line between their keys
+    private static final float PATH_SIGMA = 0.5f;
+    private static final double PATH_WEIGHT = 0.5;
+    // A turn sharper than this (between the directions over +-CORNER_SPAN samples) is a corner
+    private static final double CORNER_ANGLE = Math.toRadians(50);
+    private static final int CORNER_SPAN = 2;
+    // A letter aligned this close to a corner explains it
+    private static final int CORNER_SLACK = 3;
+    private static final double CORNER_PENALTY = 4.0;
+    private static final double PRIOR_WEIGHT = 0.35;
+    private static final double MIN_PROBABILITY = 1e-8;
+
+    private final char[] letters;
+    private final float[] centerX;
+    private final float[] centerY;
+    private final float keyWidth;
+    private final float keyHeight;
+
+    private GestureDecoder(char[] letters, float[] centerX, float[] centerY, float keyWidth, float keyHeight) {
+        this.letters = letters;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.keyWidth = keyWidth;
+        this.keyHeight = keyHeight;
+    }
+
+    /**
+     * Reads the letter keys of a laid-out keyboard. Returns null if it has none.
+     */
+    public static GestureDecoder fromKeyboard(Keyboard keyboard) {
+        List<Keyboard.Key> keys = keyboard.getKeys();
+        if (keys == null) return null;
+
+        char[] letters = new char[keys.size()];
+        float[] x = new float[keys.size()];
+        float[] y = new float[keys.size()];
+        float widthSum = 0;
+        float heightSum = 0;
+        int n = 0;
+        for (Keyboard.Key key : keys) {
+            if (key.codes == null || key.codes.length == 0 || !Character.isLetter(key.codes[0])) continue;
+            if (key.codes[0] > Character.MAX_VALUE) continue;
+            letters[n] = Character.toLowerCase((char) key.codes[0]);
+            x[n] = key.x + key.width / 2f;
+            y[n] = key.y + key.height / 2f;
+            widthSum += key.width;
+            heightSum += key.height;
+            n++;
+        }
+        if (n == 0 || widthSum <= 0 || heightSum <= 0) return null;
+        return new GestureDecoder(Arrays.copyOf(letters, n), Arrays.copyOf(x, n), Arrays.copyOf(y, n),
+                widthSum / n, heightSum / n);
+    }
+
+    /** Average letter key width in pixels (the view uses it to tell a glide from a tap). */
+    public float getKeyWidth() {
+        return keyWidth;
+    }
+
+    /**
+     * Decodes a path of 'count' points (keyboard coordinates) into up to 'limit' words, best first.
+     */
+    public <C> List<String> decode(float[] xs, float[] ys, int count, Dictionary<C> dictionary, int limit) {
+        long deadline = System.nanoTime() + TIME_BUDGET_NANOS;
+        List<String> result = new ArrayList<>();
+        if (count < 2 || limit <= 0) return result;
+
+        Path path = resample(xs, ys, count);
+        int n = path.size;
+        int keys = letters.length;
+
+        // Everything below is measured in key sizes
+        for (int s = 0; s < n; s++) {
+            path.x[s] /= keyWidth;
+            path.y[s] /= keyHeight;
+        }
+        float[] kx = new float[keys];
+        float[] ky = new float[keys];
+        for (int k = 0; k < keys; k++) {
+            kx[k] = centerX[k] / keyWidth;
+            ky[k] = centerY[k] / keyHeight;
+        }
+        // Squared distance of every sample to every key
+        float[] dist2 = new float[n * keys];
+        for (int s = 0; s < n; s++) {
+            for (int k = 0; k < keys; k++) {
+                float dx = path.x[s] - kx[k];
+                float dy = path.y[s] - ky[k];
+                dist2[s * keys + k] = dx * dx + dy * dy;
+            }
+        }
+        int[] corners = findCorners(path);
+        float hit2 = HIT_RADIUS * HIT_RADIUS;
+
+        List<State<C>> beam = new ArrayList<>();
+        beam.add(new State<C>(dictionary.root(), 0, 0, 0, 0.0));
+        List<Candidate> complete = new ArrayList<>();
+        List<State<C>> next = new ArrayList<>();
+
+        for (int depth = 0; depth < MAX_WORD_LENGTH && !beam.isEmpty(); depth++) {
+            next.clear();
+            for (State<C> state : beam) {
+                if (System.nanoTime() > deadline) break;
+                for (int k = 0; k < keys; k++) {
+                    // The first letter must be hit right where the finger went down
+                    int from = state.sample;
+                    int to = depth == 0 ? Math.min(n, CORNER_SLACK + 1) : n;
+                    int s = from;
+                    while (s < to && dist2[s * keys + k] > hit2) s++;
+                    if (s == to) continue;
+                    // Align to the closest sample of that pass over the key
+                    int best = s;
+                    while (s + 1 < n && dist2[(s + 1) * keys + k] <= hit2) {
+                        s++;
+                        if (dist2[s * keys + k] < dist2[best * keys + k]) best = s;
+                    }
+
+                    // Corners passed without a letter on them
+                    int corner = state.corner;
+                    double penalty = 0;
+                    while (corner < corners.length && corners[corner] < best - CORNER_SLACK) {
+                        penalty += CORNER_PENALTY;
+                        corner++;
+                    }
+                    while (corner < corners.length && corners[corner] <= best + CORNER_SLACK) corner++;
+
+                    C cursor = dictionary.step(state.cursor, letters[k]);
+                    if (cursor == null) continue;
+
+                    // The first letter explains the samples before it, later letters the stretch from the previous one
+                    double deviation = depth == 0
+                            ? pointDeviation(dist2, keys, k, 0, best)
+                            : segmentDeviation(path, kx, ky, state.key, k, state.sample + 1, best);
+                    double score = state.score - dist2[best * keys + k] / (2 * SIGMA * SIGMA) - deviation - penalty;
+                    State<C> child = new State<C>(cursor, k, best, corner, score);
+                    next.add(child);
+
+                    String word = dictionary.wordAt(cursor);
+                    if (word != null) {
+                        complete.add(new Candidate(word, finalScore(child, n, keys, dist2, corners,
+                                dictionary.probability(cursor))));
+                    }
+                }
+            }
+            if (System.nanoTime() > deadline) break;
+
+            Collections.sort(next, BY_SCORE);
+            beam = new ArrayList<>(next.subList(0, Math.min(BEAM_WIDTH, next.size())));
+        }
+
+        Collections.sort(complete, new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate a, Candidate b) {
+                return Double.compare(b.score, a.score);
+            }
+        });
+        for (Candidate c : complete) {
+            if (result.size() == limit) break;
+            if (!result.contains(c.word)) result.add(c.word);
+        }
+        return result;
+    }
+
+    // --- Internal helpers ---
+
+    private static final class State<C> {
+        final C cursor;
+        final int key;
+        // Sample the last letter is aligned to, and the first corner not explained yet
+        final int sample;
+        final int corner;
+        final double score;
+
+        State(C cursor, int key, int sample, int corner, double score) {
+            this.cursor = cursor;
+            this.key = key;
+            this.sample = sample;
+            this.corner = corner;
+            this.score = score;
+        }
+    }
+
+    private static final Comparator<State<?>> BY_SCORE = new Comparator<State<?>>() {
+        @Override
+        public int compare(State<?> a, State<?> b) {
+            return Double.compare(b.score, a.score);
+        }
+    };
+
+    private static final class Candidate {
+        final String word;
+        final double score;
+
+        Candidate(String word, double score) {
+            this.word = word;
+            this.score = score;
+        }
+    }
+
+    private static final class Path {
+        final float[] x;
+        final float[] y;
+        int size;
+
+        Path(int capacity) {
+            x = new float[capacity];
+            y = new float[capacity];
+        }
+
+        void add(float px, float py) {
+            x[size] = px;
+            y[size] = py;
+            size++;
+        }
+    }
+
+    /**
+     * Score of a word ending in 'state': the samples after its last letter should stay on that key,
+     * and every corner after it is unexplained.
+     */
+    private double finalScore(State<?> state, int n, int keys, float[] dist2, int[] corners, double probability) {
+        double score = state.score;
+        score -= pointDeviation(dist2, keys, state.key, state.sample + 1, n);
+        score -= (corners.length - state.corner) * CORNER_PENALTY;
+        score += PRIOR_WEIGHT * Math.log(Math.max(probability, MIN_PROBABILITY));
+        return score;
+    }
+
+    /**
+     * Cost of the samples [from, to) around one key (before the first letter or after the last one).
+     */
+    private static double pointDeviation(float[] dist2, int keys, int key, int from, int to) {
+        double sum = 0;
+        for (int s = from; s < to; s++) sum += dist2[s * keys + key];
+        return PATH_WEIGHT * sum / (2 * PATH_SIGMA * PATH_SIGMA);
+    }
+
+    /**
+     * Cost of the samples [from, to) between two letters: their distance to the line between the two keys.
+     */
+    private static double segmentDeviation(Path path, float[] kx, float[] ky, int a, int b, int from, int to) {
+        float ax = kx[a];
+        float ay = ky[a];
+        float dx = kx[b] - ax;
+        float dy = ky[b] - ay;
+        float length2 = dx * dx + dy * dy;
+        double sum = 0;
+        for (int s = from; s < to; s++) {
+            float px = path.x[s] - ax;
+            float py = path.y[s] - ay;
+            float t = length2 > 0 ? Math.max(0, Math.min(1, (px * dx + py * dy) / length2)) : 0;
+            float ex = px - t * dx;
+            float ey = py - t * dy;
+            sum += ex * ex + ey * ey;
+        }
+        return PATH_WEIGHT * sum / (2 * PATH_SIGMA * PATH_SIGMA);
+    }
+
+    /**
+     * Points at equal distances along the path (SAMPLE_STEP key widths apart, at most MAX_SAMPLES).
+     */
+    private Path resample(float[] xs, float[] ys, int count) {
+        double length = 0;
+        for (int i = 1; i < count; i++) length += Math.hypot(xs[i] - xs[i - 1], ys[i] - ys[i - 1]);
+        double step = Math.max(SAMPLE_STEP * keyWidth, length / (MAX_SAMPLES - 1));
+
+        Path path = new Path(MAX_SAMPLES + 1);
+        path.add(xs[0], ys[0]);
+        double carried = 0;
+        for (int i = 1; i < count && path.size < MAX_SAMPLES; i++) {
+            double segment = Math.hypot(xs[i] - xs[i - 1], ys[i] - ys[i - 1]);
+            double at = step - carried;
+            while (at <= segment && path.size < MAX_SAMPLES) {
+                float t = (float) (at / segment);
+                path.add(xs[i - 1] + t * (xs[i] - xs[i - 1]), ys[i - 1] + t * (ys[i] - ys[i - 1]));
+                at += step;
+            }
+            carried = segment - (at - step);
+        }
+        // Always end exactly where the finger was lifted
+        path.add(xs[count - 1], ys[count - 1]);
+        return path;
+    }
+
+    /**
+     * Indexes of the samples where the path turns sharply (one per turn, the sharpest sample).
+     */
+    private static int[] findCorners(Path path) {
+        int n = path.size;
+        double[] angle = new double[n];
+        for (int s = CORNER_SPAN; s + CORNER_SPAN < n; s++) {
+            double ax = path.x[s] - path.x[s - CORNER_SPAN];
+            double ay = path.y[s] - path.y[s - CORNER_SPAN];
+            double bx = path.x[s + CORNER_SPAN] - path.x[s];
+            double by = path.y[s + CORNER_SPAN] - path.y[s];
+            double la = Math.hypot(ax, ay);
+            double lb = Math.hypot(bx, by);
+            if (la == 0 || lb == 0) continue;
+            double cos = (ax * bx + ay * by) / (la * lb);
+            angle[s] = Math.acos(Math.max(-1, Math.min(1, cos)));
+        }
+
+        int[] corners = new int[n];
+        int found = 0;
+        for (int s = 1; s + 1 < n; s++) {
+            if (angle[s] < CORNER_ANGLE) continue;
+            // Keep only the local maximum of each turn
+            boolean peak = true;
+            for (int d = -CORNER_SPAN; d <= CORNER_SPAN && peak; d++) {
+                int o = s + d;
+                if (d != 0 && o >= 0 && o < n && (angle[o] > angle[s] || (angle[o] == angle[s] && o < s))) peak = false;
+            }
+            if (peak) corners[found++] = s;
+        }
+        return Arrays.copyOf(corners, found);
+    }
+}
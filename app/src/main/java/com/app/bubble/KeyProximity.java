@@ -0,0 +1,116 @@
+package com.app.bubble;
+
+import android.inputmethodservice.Keyboard;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Substitution costs between the letter keys of a keyboard layout, precomputed from the key coordinates.
+ * Hitting a touching key is a cheap typo, hitting a key across the keyboard is a full edit.
+ * Costs are in tenths of an edit (EDIT_COST = one plain insert, delete or substitution), so weighted
+ * edit distances stay integers. Immutable, safe to share between threads.
+ */
+public class KeyProximity {
+
+    public static final int EDIT_COST = 10;
+    // Swapping two neighbouring letters ("teh") is one slip, not two substitutions
+    public static final int TRANSPOSE_COST = 6;
+    // Touching keys (horizontal, vertical or diagonal neighbour)
+    public static final int NEIGHBOR_COST = 4;
+    // One key in between
+    public static final int NEAR_COST = 7;
+
+    // Key centre distances in key sizes: up to 1.5 touch (diagonals are ~1.4), up to 2.5 have one key between
+    private static final float NEIGHBOR_DISTANCE = 1.5f;
+    private static final float NEAR_DISTANCE = 2.5f;
+
+    // Sorted lower-case key letters; costs[i * n + j] is the cost of typing letters[i] instead of letters[j]
+    private final char[] letters;
+    private final byte[] costs;
+
+    private KeyProximity(char[] letters, byte[] costs) {
+        this.letters = letters;
+        this.costs = costs;
+    }
+
+    /**
+     * Builds the table from the laid-out keys of a keyboard (only keys producing one letter are used).
+     * Returns null if the layout has no letter keys.
+     */
+    public static KeyProximity fromKeyboard(Keyboard keyboard) {
+        List<Keyboard.Key> keys = keyboard.getKeys();
+        if (keys == null) return null;
+
+        char[] found = new char[keys.size()];
+        float[] centerX = new float[keys.size()];
+        float[] centerY = new float[keys.size()];
+        float widthSum = 0;
+        float heightSum = 0;
+        int n = 0;
+        for (Keyboard.Key key : keys) {
+            if (key.codes == null || key.codes.length == 0 || !Character.isLetter(key.codes[0])) continue;
+            if (key.codes[0] > Character.MAX_VALUE) continue;
+            found[n] = Character.toLowerCase((char) key.codes[0]);
+            centerX[n] = key.x + key.width / 2f;
+            centerY[n] = key.y + key.height / 2f;
+            widthSum += key.width;
+            heightSum += key.height;
+            n++;
+        }
+        if (n == 0 || widthSum <= 0 || heightSum <= 0) return null;
+
+        // Distances are measured in key sizes, so they do not depend on screen size or key aspect ratio
+        float keyWidth = widthSum / n;
+        float keyHeight = heightSum / n;
+
+        // Sort the letters (with their centres) for binary search lookups
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        final char[] labels = found;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return labels[a] - labels[b];
+            }
+        });
+        char[] letters = new char[n];
+        float[] x = new float[n];
+        float[] y = new float[n];
+        for (int i = 0; i < n; i++) {
+            letters[i] = found[order[i]];
+            x[i] = centerX[order[i]] / keyWidth;
+            y[i] = centerY[order[i]] / keyHeight;
+        }
+
+        byte[] costs = new byte[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int cost;
+                if (letters[i] == letters[j]) {
+                    cost = 0;
+                } else {
+                    double d = Math.hypot(x[i] - x[j], y[i] - y[j]);
+                    cost = d <= NEIGHBOR_DISTANCE ? NEIGHBOR_COST : d <= NEAR_DISTANCE ? NEAR_COST : EDIT_COST;
+                }
+                costs[i * n + j] = (byte) cost;
+            }
+        }
+        return new KeyProximity(letters, costs);
+    }
+
+    /**
+     * Cost of 'typed' where 'intended' was meant (both compared lower-case).
+     * Letters that are not on the layout cost a full edit.
+     */
+    public int substitutionCost(char typed, char intended) {
+        char a = Character.toLowerCase(typed);
+        char b = Character.toLowerCase(intended);
+        if (a == b) return 0;
+        int i = Arrays.binarySearch(letters, a);
+        int j = Arrays.binarySearch(letters, b);
+        if (i < 0 || j < 0) return EDIT_COST;
+        return costs[i * letters.length + j];
+    }
+}
@@ -39,6 +39,53 @@ public class LanguageUtils {
         "tk", "uk", "ur", "ug", "uz", "vi", "cy", "xh", "yi", "yo", "zu"
     };
 
+    // 3. Writing systems, for telling which language model a text belongs to
+    public static final int SCRIPT_NONE = 0;
+    public static final int SCRIPT_LATIN = 1;
+    public static final int SCRIPT_GREEK = 2;
+    public static final int SCRIPT_CYRILLIC = 3;
+    public static final int SCRIPT_ARMENIAN = 4;
+    public static final int SCRIPT_HEBREW = 5;
+    public static final int SCRIPT_ARABIC = 6;
+    public static final int SCRIPT_DEVANAGARI = 7;
+    public static final int SCRIPT_BENGALI = 8;
+    public static final int SCRIPT_GURMUKHI = 9;
+    public static final int SCRIPT_GUJARATI = 10;
+    public static final int SCRIPT_ORIYA = 11;
+    public static final int SCRIPT_TAMIL = 12;
+    public static final int SCRIPT_TELUGU = 13;
+    public static final int SCRIPT_KANNADA = 14;
+    public static final int SCRIPT_MALAYALAM = 15;
+    public static final int SCRIPT_SINHALA = 16;
+    public static final int SCRIPT_THAI = 17;
+    public static final int SCRIPT_LAO = 18;
+    public static final int SCRIPT_MYANMAR = 19;
+    public static final int SCRIPT_GEORGIAN = 20;
+    public static final int SCRIPT_HANGUL = 21;
+    public static final int SCRIPT_ETHIOPIC = 22;
+    public static final int SCRIPT_KHMER = 23;
+    // Han ideographs and Japanese kana
+    public static final int SCRIPT_CJK = 24;
+    private static final int SCRIPT_COUNT = 25;
+
+    // { first code point, last code point, script }, sorted
+    private static final int[][] SCRIPT_RANGES = {
+        { 0x0041, 0x024F, SCRIPT_LATIN }, { 0x0370, 0x03FF, SCRIPT_GREEK }, { 0x0400, 0x052F, SCRIPT_CYRILLIC },
+        { 0x0530, 0x058F, SCRIPT_ARMENIAN }, { 0x0590, 0x05FF, SCRIPT_HEBREW }, { 0x0600, 0x06FF, SCRIPT_ARABIC },
+        { 0x0750, 0x077F, SCRIPT_ARABIC }, { 0x0900, 0x097F, SCRIPT_DEVANAGARI }, { 0x0980, 0x09FF, SCRIPT_BENGALI },
+        { 0x0A00, 0x0A7F, SCRIPT_GURMUKHI }, { 0x0A80, 0x0AFF, SCRIPT_GUJARATI }, { 0x0B00, 0x0B7F, SCRIPT_ORIYA },
+        { 0x0B80, 0x0BFF, SCRIPT_TAMIL }, { 0x0C00, 0x0C7F, SCRIPT_TELUGU }, { 0x0C80, 0x0CFF, SCRIPT_KANNADA },
+        { 0x0D00, 0x0D7F, SCRIPT_MALAYALAM }, { 0x0D80, 0x0DFF, SCRIPT_SINHALA }, { 0x0E00, 0x0E7F, SCRIPT_THAI },
+        { 0x0E80, 0x0EFF, SCRIPT_LAO }, { 0x1000, 0x109F, SCRIPT_MYANMAR }, { 0x10A0, 0x10FF, SCRIPT_GEORGIAN },
+        { 0x1100, 0x11FF, SCRIPT_HANGUL }, { 0x1200, 0x139F, SCRIPT_ETHIOPIC }, { 0x1780, 0x17FF, SCRIPT_KHMER },
+        { 0x1E00, 0x1EFF, SCRIPT_LATIN }, { 0x1F00, 0x1FFF, SCRIPT_GREEK }, { 0x3040, 0x30FF, SCRIPT_CJK },
+        { 0x3130, 0x318F, SCRIPT_HANGUL }, { 0x3400, 0x4DBF, SCRIPT_CJK }, { 0x4E00, 0x9FFF, SCRIPT_CJK },
+        { 0xAC00, 0xD7AF, SCRIPT_HANGUL }, { 0xFB50, 0xFDFF, SCRIPT_ARABIC }, { 0xFE70, 0xFEFF, SCRIPT_ARABIC }
+    };
+
+    // Letters looked at by dominantScript (a long clip is judged by its beginning)
+    private static final int SCRIPT_SAMPLE = 2000;
+
     /**
      * Helper to get the API code for a selected position in the spinner.
      */
@@ -60,4 +107,77 @@ public class LanguageUtils {
         }
         return 0; // Default to first item
     }
+
+    /**
+     * Writing system of a language code (SCRIPT_*). Languages not listed are written in Latin letters.
+     */
+    public static int scriptOf(String code) {
+        if (code == null) return SCRIPT_LATIN;
+        switch (code) {
+            case "el": return SCRIPT_GREEK;
+            case "be": case "bg": case "kk": case "ky": case "mk": case "mn": case "ru": case "sr": case "tg":
+            case "tt": case "uk":
+                return SCRIPT_CYRILLIC;
+            case "hy": return SCRIPT_ARMENIAN;
+            case "iw": case "yi": return SCRIPT_HEBREW;
+            case "ar": case "fa": case "ps": case "sd": case "ug": case "ur": return SCRIPT_ARABIC;
+            case "hi": case "mr": case "ne": return SCRIPT_DEVANAGARI;
+            case "bn": return SCRIPT_BENGALI;
+            case "pa": return SCRIPT_GURMUKHI;
+            case "gu": return SCRIPT_GUJARATI;
+            case "or": return SCRIPT_ORIYA;
+            case "ta": return SCRIPT_TAMIL;
+            case "te": return SCRIPT_TELUGU;
+            case "kn": return SCRIPT_KANNADA;
+            case "ml": return SCRIPT_MALAYALAM;
+            case "si": return SCRIPT_SINHALA;
+            case "th": return SCRIPT_THAI;
+            case "lo": return SCRIPT_LAO;
+            case "my": return SCRIPT_MYANMAR;
+            case "ka": return SCRIPT_GEORGIAN;
+            case "ko": return SCRIPT_HANGUL;
+            case "am": return SCRIPT_ETHIOPIC;
+            case "km": return SCRIPT_KHMER;
+            case "ja": case "zh-CN": case "zh-TW": return SCRIPT_CJK;
+            default: return SCRIPT_LATIN;
+        }
+    }
+
+    /**
+     * The script most letters of 'text' are written in (SCRIPT_NONE if it has no letters of a known script).
+     * Only the first SCRIPT_SAMPLE letters are counted.
+     */
+    public static int dominantScript(CharSequence text) {
+        int[] counts = new int[SCRIPT_COUNT];
+        int letters = 0;
+        for (int i = 0; i < text.length() && letters < SCRIPT_SAMPLE; ) {
+            int cp = Character.codePointAt(text, i);
+            i += Character.charCount(cp);
+            if (!Character.isLetter(cp)) continue;
+            counts[scriptOfCodePoint(cp)]++;
+            letters++;
+        }
+        int best = SCRIPT_NONE;
+        int bestCount = 0;
+        for (int script = 1; script < SCRIPT_COUNT; script++) {
+            if (counts[script] > bestCount) {
+                best = script;
+                bestCount = counts[script];
+            }
+        }
+        return best;
+    }
+
+    private static int scriptOfCodePoint(int cp) {
+        int lo = 0;
+        int hi = SCRIPT_RANGES.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int[] range = SCRIPT_RANGES[mid];
+            if (cp < range[0]) hi = mid - 1;
+            else if (cp > range[1]) lo = mid + 1;
+            else return range[2];
+        }
+        return SCRIPT_NONE;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package com.app.bubble;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process keystroke latency histograms, one per stage of the key path (shown by DebugActivity),
+ * plus the keyboard's own start-up (input view creation and first use of each panel).
+ *
+ * Durations go into fixed log-linear buckets (exact below 16 us, then 8 buckets per power of two,
+ * i.e. about 12% resolution, up to ~16 s). Recording is two System.nanoTime() calls and a few atomic
+ * increments: nothing is allocated and nothing blocks, so it is always on and safe from any thread.
+ * Percentiles are read from the buckets, so they are accurate to one bucket width.
+ */
+public final class LatencyRecorder {
+
+    // Touch event to the start of onKey (input dispatch)
+    public static final int STAGE_TOUCH = 0;
+    // The whole onKey call
+    public static final int STAGE_ON_KEY = 1;
+    // Computing suggestions (prefix completions or next-word predictions)
+    public static final int STAGE_PREDICTION = 2;
+    // Auto-correction lookup on Space
+    public static final int STAGE_CORRECTION = 3;
+    // InputConnection.commitText on the key path
+    public static final int STAGE_COMMIT = 4;
+    // Refreshing the candidate strip
+    public static final int STAGE_CANDIDATES = 5;
+    // onCreateInputView (cold start of the keyboard window)
+    public static final int STAGE_INPUT_VIEW = 6;
+    // Inflating a panel (translation, emoji, clipboard) on its first use
+    public static final int STAGE_PANEL = 7;
+    public static final int STAGE_COUNT = 8;
+
+    private static final String[] STAGE_NAMES = {
+        "touch", "onKey", "prediction", "correction", "commit", "candidates", "inputView", "panel"
+    };
+
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Octaves from 2^4 us to 2^24 us (~16 s); longer durations land in the last bucket
+    private static final int OCTAVES = 20;
+    private static final int BUCKETS = LINEAR_BUCKETS + OCTAVES * SUB_BUCKETS;
+
+    // counts[stage * BUCKETS + bucket]
+    private static final AtomicLongArray counts = new AtomicLongArray(STAGE_COUNT * BUCKETS);
+    // Per stage: number of samples, sum and maximum (microseconds)
+    private static final AtomicLongArray samples = new AtomicLongArray(STAGE_COUNT);
+    private static final AtomicLongArray sums = new AtomicLongArray(STAGE_COUNT);
+    private static final AtomicLongArray maxima = new AtomicLongArray(STAGE_COUNT);
+
+    private LatencyRecorder() {
+    }
+
+    /** Start timestamp for record(). */
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /** Records the time since 'startNanos' (from now()). */
+    public static void record(int stage, long startNanos) {
+        recordMicros(stage, (System.nanoTime() - startNanos) / 1000);
+    }
+
+    public static void recordMicros(int stage, long micros) {
+        if (stage < 0 || stage >= STAGE_COUNT) return;
+        if (micros < 0) micros = 0;
+        counts.incrementAndGet(stage * BUCKETS + bucketOf(micros));
+        samples.incrementAndGet(stage);
+        sums.addAndGet(stage, micros);
+        long max;
+        while ((max = maxima.get(stage)) < micros && !maxima.compareAndSet(stage, max, micros)) {
+            // Retry: another thread raised the maximum meanwhile
+        }
+    }
+
+    public static void reset() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        for (int s = 0; s < STAGE_COUNT; s++) {
+            samples.set(s, 0);
+            sums.set(s, 0);
+            maxima.set(s, 0);
+        }
+    }
+
+    public static String stageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    public static long count(int stage) {
+        return samples.get(stage);
+    }
+
+    public static long maxMicros(int stage) {
+        return maxima.get(stage);
+    }
+
+    public static long meanMicros(int stage) {
+        long n = samples.get(stage);
+        return n == 0 ? 0 : sums.get(stage) / n;
+    }
+
+    /**
+     * Duration (microseconds, middle of its bucket) below which 'percentile' percent of the samples fall.
+     * Returns 0 if the stage has no samples.
+     */
+    public static long percentileMicros(int stage, double percentile) {
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) total += counts.get(stage * BUCKETS + b);
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(stage * BUCKETS + b);
+            if (seen >= rank) return Math.min(bucketMiddle(b), maxima.get(stage));
+        }
+        return maxima.get(stage);
+    }
+
+    /**
+     * Plain-text table of every stage (count, mean, p50, p90, p99, max in milliseconds), for display and export.
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-11s %7s %8s %8s %8s %8s %8s%n",
+                "stage", "count", "mean", "p50", "p90", "p99", "max"));
+        for (int s = 0; s < STAGE_COUNT; s++) {
+            sb.append(String.format(Locale.US, "%-11s %7d %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                    STAGE_NAMES[s], count(s), meanMicros(s) / 1000.0,
+                    percentileMicros(s, 50) / 1000.0, percentileMicros(s, 90) / 1000.0,
+                    percentileMicros(s, 99) / 1000.0, maxMicros(s) / 1000.0));
+        }
+        sb.append("(milliseconds)\n");
+        return sb.toString();
+    }
+
+    // --- Internal helpers ---
+
+    private static int bucketOf(long micros) {
+        if (micros < LINEAR_BUCKETS) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int octave = exponent - 4;
+        if (octave >= OCTAVES) return BUCKETS - 1;
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + octave * SUB_BUCKETS + sub;
+    }
+
+    private static long bucketMiddle(int bucket) {
+        if (bucket < LINEAR_BUCKETS) return bucket;
+        int octave = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (octave + 4 - SUB_BUCKET_BITS);
+        long lower = (1L << (octave + 4)) + sub * width;
+        return lower + width / 2;
+    }
+}
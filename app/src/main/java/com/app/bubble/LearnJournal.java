@@ -0,0 +1,283 @@
+package com.app.bubble;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only log of "learn" events for PredictionEngine.
+ * Each learned word or word pair costs one small line appended to a file (O(1) disk work),
+ * instead of rewriting the whole dictionary. The log is replayed on start-up and periodically
+ * compacted: the engine writes a full snapshot, then the log is truncated.
+ *
+ * Line format: "W\t<word>", "U\t<word>\t<count>", "B\t<previous>\t<next>" or
+ * "T\t<previous2>\t<previous>\t<next>" (tabs, newlines and backslashes escaped).
+ *
+ * Every log starts with "S\t<sequence>". A snapshot records the sequence of the log it absorbed, and a
+ * log whose sequence the snapshot already covers is skipped on replay (and overwritten by the next append),
+ * so a log that could not be deleted after a compaction is never counted twice.
+ */
+public class LearnJournal {
+
+    // Number of events after which the engine should write a fresh snapshot
+    public static final int COMPACT_THRESHOLD = 1000;
+
+    private static final String TYPE_WORD = "W";
+    private static final String TYPE_WORD_COUNT = "U";
+    private static final String TYPE_BIGRAM = "B";
+    private static final String TYPE_TRIGRAM = "T";
+    private static final String TYPE_SEQUENCE = "S";
+
+    public interface Replayer {
+        void onWord(String word);
+        void onWordCount(String word, int count);
+        void onBigram(String previous, String next);
+        void onTrigram(String previous2, String previous, String next);
+    }
+
+    public interface SnapshotWriter {
+        /**
+         * Persists the full state synchronously, recording 'journalSequence' (see replay).
+         * Returns false if nothing was written.
+         */
+        boolean writeSnapshot(long journalSequence);
+    }
+
+    private final File file;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger eventsSinceCompaction = new AtomicInteger(0);
+    // Event count at which needsCompaction() turns true (pushed back after a failed snapshot)
+    private final AtomicInteger compactAt = new AtomicInteger(COMPACT_THRESHOLD);
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+    // Only used on ioExecutor (and by replay, before the first append)
+    private Writer writer;
+    // Sequence of the log new events belong to, and of the log currently on disk (-1: none)
+    private long sequence = 0;
+    private long fileSequence = -1;
+
+    public LearnJournal(File directory, String name) {
+        this.file = new File(directory, name);
+    }
+
+    /**
+     * Applies every event in the log (synchronously) and returns how many were read.
+     * 'snapshotSequence' is the sequence recorded in the loaded snapshot (-1 without one); a log it covers
+     * is skipped. A torn last line from a crash is simply skipped.
+     */
+    public int replay(Replayer replayer, long snapshotSequence) {
+        sequence = snapshotSequence + 1;
+        if (!file.exists()) return 0;
+
+        int count = 0;
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line = reader.readLine();
+            // Logs written before sequences were added have no header: sequence 0
+            fileSequence = 0;
+            String[] header = line != null ? line.split("\t", -1) : null;
+            if (header != null && header.length == 2 && TYPE_SEQUENCE.equals(header[0])) {
+                try {
+                    fileSequence = Long.parseLong(header[1]);
+                } catch (NumberFormatException ignored) {
+                    // Torn header: nothing else can follow it
+                }
+                line = reader.readLine();
+            }
+            if (fileSequence <= snapshotSequence) {
+                // Already in the snapshot: the compaction that wrote it could not delete this log
+                return 0;
+            }
+            sequence = fileSequence;
+
+            for (; line != null; line = reader.readLine()) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length == 2 && TYPE_WORD.equals(parts[0])) {
+                    replayer.onWord(unescape(parts[1]));
+                    count++;
+                } else if (parts.length == 3 && TYPE_WORD_COUNT.equals(parts[0])) {
+                    try {
+                        replayer.onWordCount(unescape(parts[1]), Integer.parseInt(parts[2]));
+                        count++;
+                    } catch (NumberFormatException ignored) {
+                        // Torn line
+                    }
+                } else if (parts.length == 3 && TYPE_BIGRAM.equals(parts[0])) {
+                    replayer.onBigram(unescape(parts[1]), unescape(parts[2]));
+                    count++;
+                } else if (parts.length == 4 && TYPE_TRIGRAM.equals(parts[0])) {
+                    replayer.onTrigram(unescape(parts[1]), unescape(parts[2]), unescape(parts[3]));
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeQuietly(reader);
+        }
+        eventsSinceCompaction.set(count);
+        return count;
+    }
+
+    public void appendWord(String word) {
+        enqueue(TYPE_WORD + "\t" + escape(word) + "\n", 1);
+    }
+
+    public void appendWordCounts(Map<String, Integer> counts) {
+        if (counts.isEmpty()) return;
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            sb.append(TYPE_WORD_COUNT).append('\t').append(escape(entry.getKey()))
+              .append('\t').append(entry.getValue()).append('\n');
+        }
+        enqueue(sb.toString(), counts.size());
+    }
+
+    public void appendBigram(String previous, String next) {
+        enqueue(TYPE_BIGRAM + "\t" + escape(previous) + "\t" + escape(next) + "\n", 1);
+    }
+
+    public void appendTrigram(String previous2, String previous, String next) {
+        enqueue(TYPE_TRIGRAM + "\t" + escape(previous2) + "\t" + escape(previous) + "\t" + escape(next) + "\n", 1);
+    }
+
+    /**
+     * True once enough events were logged since the last snapshot (false while one is being written).
+     */
+    public boolean needsCompaction() {
+        return !compacting.get() && eventsSinceCompaction.get() >= compactAt.get();
+    }
+
+    /**
+     * Runs the snapshot writer on the journal thread, then starts a new log.
+     * Appends queued earlier are already in the log (and in the snapshot), appends queued later
+     * go to the new log, so no event is lost. If the snapshot fails the log is kept, and the next
+     * attempt waits for another COMPACT_THRESHOLD events.
+     * Must be called on the thread that appends, right after the state for the snapshot was copied.
+     */
+    public void compact(final SnapshotWriter snapshotWriter) {
+        if (!compacting.compareAndSet(false, true)) return;
+        // Exactly the events appended so far are in the copied state
+        final int compacted = eventsSinceCompaction.get();
+        ioExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!snapshotWriter.writeSnapshot(sequence)) {
+                        compactAt.set(eventsSinceCompaction.get() + COMPACT_THRESHOLD);
+                        return;
+                    }
+                    eventsSinceCompaction.addAndGet(-compacted);
+                    compactAt.set(COMPACT_THRESHOLD);
+                    // The snapshot covers this log now; the next append starts a new one
+                    sequence++;
+                    closeQuietly(writer);
+                    writer = null;
+                    // If this fails, replay skips the old log by its sequence and the next append overwrites it
+                    file.delete();
+                } finally {
+                    compacting.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes the log after everything queued so far is written, then runs 'onClosed' on the journal thread.
+     * No appends are allowed afterwards.
+     */
+    public void close(final Runnable onClosed) {
+        ioExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeQuietly(writer);
+                writer = null;
+                onClosed.run();
+            }
+        });
+        ioExecutor.shutdown();
+    }
+
+    // --- Internal helpers ---
+
+    private void enqueue(final String lines, int events) {
+        eventsSinceCompaction.addAndGet(events);
+        ioExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (writer == null) {
+                        // A log of an older sequence is covered by the snapshot: start over
+                        boolean fresh = fileSequence != sequence;
+                        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, !fresh), "UTF-8"));
+                        if (fresh) {
+                            writer.write(TYPE_SEQUENCE + "\t" + sequence + "\n");
+                            fileSequence = sequence;
+                        }
+                    }
+                    writer.write(lines);
+                    writer.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    closeQuietly(writer);
+                    writer = null;
+                }
+            }
+        });
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                switch (n) {
+                    case 't': sb.append('\t'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    default: sb.append(n);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.app.bubble;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Bundled base vocabulary: a frequency-ranked word list compiled at build time
+ * (see buildSrc LexiconCompiler) into assets/lexicon/<language>.lex.
+ * The asset is stored uncompressed in the APK and memory-mapped in place, so even a large list
+ * costs no heap and no parsing; words and frequencies are read on demand.
+ * Only English ships a list, and it is a small seed of common words (see src/main/lexicon/en.txt);
+ * a full frequency list can replace it without code changes.
+ *
+ * Layout (big-endian, version 2):
+ *   int magic, int version, int wordCount, long maxCount, long totalCount, int rangeCount, int minTopRange,
+ *   int[wordCount + 1] string offsets (last one = end of string data),
+ *   byte[wordCount] frequency classes (0..255, log scale: count = maxCount ^ (class / 255)),
+ *   UTF-8 words sorted by lower-case key, then by original spelling (BinaryDictionary.KEY_ORDER),
+ *   top table: per key-prefix range of at least minTopRange words, ordered by from, then to:
+ *              int from, int to, int[TOP_WORDS] most frequent word indexes (most frequent first).
+ */
+public class Lexicon extends MappedWordList {
+
+    public static final String ASSET_DIR = "lexicon";
+    public static final String ASSET_EXTENSION = ".lex";
+
+    private static final int MAGIC = 0x424C4558; // "BLEX"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 36;
+    // Words per top table entry; topByFrequency callers keep at most this many
+    public static final int TOP_WORDS = 8;
+    private static final int TOP_ENTRY_SIZE = 8 + 4 * TOP_WORDS;
+
+    private final int frequencyTable;
+    private final int topTable;
+    private final int rangeCount;
+    private final int minTopRange;
+    // Probability of every frequency class (256 entries, computed once)
+    private final double[] classProbability = new double[256];
+
+    private Lexicon(MappedByteBuffer buffer) {
+        super(buffer, buffer.getInt(8), HEADER_SIZE);
+        this.frequencyTable = HEADER_SIZE + 4 * (wordCount + 1);
+        this.topTable = buffer.getInt(HEADER_SIZE + 4 * wordCount);
+        this.rangeCount = buffer.getInt(28);
+        this.minTopRange = buffer.getInt(32);
+
+        long maxCount = buffer.getLong(12);
+        long totalCount = buffer.getLong(20);
+        double logMax = Math.log(Math.max(maxCount, 1));
+        for (int c = 1; c < 256; c++) {
+            classProbability[c] = totalCount > 0 ? Math.exp(logMax * c / 255.0) / totalCount : 0;
+        }
+    }
+
+    /**
+     * Maps the lexicon asset of a language ("en", "ml"...). Returns null if the app has none for it.
+     */
+    public static Lexicon openAsset(Context context, String language) {
+        AssetFileDescriptor afd = null;
+        try {
+            // Only works for uncompressed assets (see noCompress in app/build.gradle)
+            afd = context.getAssets().openFd(ASSET_DIR + "/" + language + ASSET_EXTENSION);
+            FileInputStream in = afd.createInputStream();
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+            if (mapped.capacity() < HEADER_SIZE || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) return null;
+            return new Lexicon(mapped);
+        } catch (IOException e) {
+            // No lexicon bundled for this language
+            return null;
+        } finally {
+            // The mapping stays valid after the descriptor is closed
+            if (afd != null) {
+                try {
+                    afd.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /** Log-scale frequency class (0..255) of the word at 'index'. */
+    public int frequencyClass(int index) {
+        return buffer.get(frequencyTable + index) & 0xFF;
+    }
+
+    /** Unigram probability of the word at 'index' in the source corpus. */
+    public double probability(int index) {
+        return classProbability[frequencyClass(index)];
+    }
+
+    /**
+     * Offers the most frequent words of the prefix range [from, to) to 'top' by frequency class
+     * ('top' must not hold more than TOP_WORDS). Large ranges read their precomputed top list, so a
+     * short prefix costs one binary search over the top table; smaller ones read one byte per word.
+     */
+    public void topByFrequency(int from, int to, BoundedTopK top) {
+        if (to - from >= minTopRange) {
+            int entry = findRange(from, to);
+            if (entry >= 0) {
+                int pos = topTable + entry * TOP_ENTRY_SIZE + 8;
+                for (int k = 0; k < TOP_WORDS; k++) {
+                    int i = buffer.getInt(pos + 4 * k);
+                    top.offer(i, frequencyClass(i));
+                }
+                return;
+            }
+        }
+        for (int i = from; i < to; i++) {
+            top.offer(i, buffer.get(frequencyTable + i) & 0xFF);
+        }
+    }
+
+    /**
+     * Index of the top table entry for exactly [from, to), or -1 (not a prefix range).
+     */
+    private int findRange(int from, int to) {
+        int lo = 0;
+        int hi = rangeCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int pos = topTable + mid * TOP_ENTRY_SIZE;
+            int midFrom = buffer.getInt(pos);
+            int c = midFrom != from ? Integer.compare(midFrom, from) : Integer.compare(buffer.getInt(pos + 4), to);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,279 @@
+package com.app.bubble;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Read-only view of a sorted word list inside a memory-mapped file.
+ * The list is an int offset table (wordCount + 1 entries, the last one = end of the word data)
+ * followed by UTF-8 words sorted in BinaryDictionary.KEY_ORDER. Words are decoded on demand,
+ * so nothing of the list is copied onto the heap; binary searches compare the encoded bytes in place.
+ * All reads use absolute positions, so one instance can be shared between threads.
+ */
+public class MappedWordList {
+
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    protected final ByteBuffer buffer;
+    protected final int wordCount;
+    private final int offsetTable;
+
+    protected MappedWordList(ByteBuffer buffer, int wordCount, int offsetTable) {
+        this.buffer = buffer;
+        this.wordCount = wordCount;
+        this.offsetTable = offsetTable;
+    }
+
+    public int size() {
+        return wordCount;
+    }
+
+    public String getWord(int index) {
+        int start = offset(index);
+        int end = offset(index + 1);
+        return decode(start, end - start);
+    }
+
+    /**
+     * Exact (case-sensitive) membership test.
+     */
+    public boolean contains(String word) {
+        return indexOf(word) >= 0;
+    }
+
+    /**
+     * Index of the exact (case-sensitive) spelling, or -1.
+     */
+    public int indexOf(String word) {
+        String key = BinaryDictionary.toKey(word);
+        int i = lowerBound(key, 0, wordCount);
+        while (i < wordCount) {
+            String w = getWord(i);
+            if (!BinaryDictionary.toKey(w).equals(key)) return -1;
+            if (w.equals(word)) return i;
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * First index in [from, to) whose key, cut to the prefix length, is >= keyPrefix.
+     */
+    public int lowerBound(CharSequence keyPrefix, int from, int to) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(mid, keyPrefix) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * First index in [from, to) whose key, cut to the prefix length, is > keyPrefix.
+     * Together with lowerBound this gives the range of all words starting with the prefix.
+     */
+    public int upperBound(CharSequence keyPrefix, int from, int to) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(mid, keyPrefix) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Appends up to 'limit' words of the range [from, to), skipping words whose key equals 'skipKey'.
+     */
+    public void collect(int from, int to, String skipKey, int limit, List<String> out) {
+        int added = 0;
+        for (int i = from; i < to && added < limit; i++) {
+            String w = getWord(i);
+            if (skipKey != null && BinaryDictionary.toKey(w).equals(skipKey)) continue;
+            out.add(w);
+            added++;
+        }
+    }
+
+    /**
+     * Adds every word whose key is within 'maxDistance' edits of 'key' (a lower-case key; inserts, deletes,
+     * substitutions and swaps of two neighbouring chars count one each).
+     * The sorted list is walked as an implicit trie of prefix ranges, and a branch is left as soon as no
+     * extension of it can come back within 'maxDistance', so only the words found are decoded.
+     * With 'anchored', only words starting with one of the first maxDistance + 1 chars of 'key' are searched
+     * (the first char was not replaced): most of the walk is spent on the first two levels, so this is
+     * several times cheaper.
+     */
+    public void collectNear(String key, int maxDistance, boolean anchored, Collection<String> out) {
+        int n = key.length();
+        // One distance row per prefix length; keys longer than n + maxDistance can't match
+        int[][] rows = new int[n + maxDistance + 1][n + 1];
+        for (int j = 0; j <= n; j++) rows[0][j] = j;
+        String firstChars = anchored ? key.substring(0, Math.min(n, maxDistance + 1)) : null;
+        walkNear(key, maxDistance, firstChars, new StringBuilder(), rows, 0, wordCount, out);
+    }
+
+    // --- Internal helpers ---
+
+    private int offset(int index) {
+        return buffer.getInt(offsetTable + 4 * index);
+    }
+
+    /**
+     * collectNear for the words of [from, to), which all start with 'prefix' (rows[prefix.length()] is its row).
+     * 'firstChars' (null: any) restricts the first char of the words.
+     */
+    private void walkNear(String key, int maxDistance, String firstChars, StringBuilder prefix, int[][] rows,
+                          int from, int to, Collection<String> out) {
+        int n = key.length();
+        int depth = prefix.length();
+        int lo = from;
+        // Words whose key is the prefix itself sort first
+        while (lo < to && keyChar(lo, depth) < 0) {
+            if (rows[depth][n] <= maxDistance) out.add(getWord(lo));
+            lo++;
+        }
+        if (depth + 1 == rows.length) return;
+
+        int[] previous = rows[depth];
+        int[] row = rows[depth + 1];
+        while (lo < to) {
+            char c = (char) keyChar(lo, depth);
+            prefix.append(c);
+            int hi = childEnd(lo, to, depth, c);
+            if (depth == 0 && firstChars != null && firstChars.indexOf(c) < 0) {
+                prefix.setLength(depth);
+                lo = hi;
+                continue;
+            }
+
+            // Optimal string alignment distance, one row per char of the prefix
+            row[0] = depth + 1;
+            int min = row[0];
+            for (int j = 1; j <= n; j++) {
+                int d = Math.min(Math.min(row[j - 1], previous[j]) + 1,
+                        previous[j - 1] + (key.charAt(j - 1) == c ? 0 : 1));
+                if (depth > 0 && j > 1 && key.charAt(j - 2) == c && key.charAt(j - 1) == prefix.charAt(depth - 1)) {
+                    d = Math.min(d, rows[depth - 1][j - 2] + 1);
+                }
+                row[j] = d;
+                if (d < min) min = d;
+            }
+            // No value of a later row is below the smallest of this one
+            if (min <= maxDistance) walkNear(key, maxDistance, firstChars, prefix, rows, lo, hi, out);
+
+            prefix.setLength(depth);
+            lo = hi;
+        }
+    }
+
+    /**
+     * End of the words of [from, to) whose key has 'c' at 'depth', given that the word at 'from' has.
+     * All words of the range share the first 'depth' chars and are longer, so they are sorted by that char.
+     * Gallops from 'from': most ranges are small, and this costs O(log size) instead of O(log (to - from)).
+     */
+    private int childEnd(int from, int to, int depth, char c) {
+        int inside = from;
+        int step = 1;
+        int outside = from + 1;
+        while (outside < to && keyChar(outside, depth) == c) {
+            inside = outside;
+            step <<= 1;
+            outside = from + step;
+        }
+        if (outside > to) outside = to;
+        while (inside + 1 < outside) {
+            int mid = (inside + outside) >>> 1;
+            if (keyChar(mid, depth) == c) inside = mid;
+            else outside = mid;
+        }
+        return outside;
+    }
+
+    /**
+     * UTF-16 char 'position' of the key of the word at 'index' (see BinaryDictionary.toKey),
+     * or -1 if the key is shorter. Decoded in place like comparePrefix.
+     */
+    private int keyChar(int index, int position) {
+        int pos = offset(index);
+        int end = offset(index + 1);
+        int i = 0;
+        while (pos < end) {
+            int b = buffer.get(pos) & 0xFF;
+            int cp = codePointAt(pos, b);
+            pos += sequenceLength(b);
+            if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (i == position) return Character.toLowerCase((char) cp);
+                i++;
+            } else {
+                if (i == position) return Character.highSurrogate(cp);
+                if (i + 1 == position) return Character.lowSurrogate(cp);
+                i += 2;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the key of the word at 'index', cut to the prefix length, with 'keyPrefix'.
+     * The UTF-8 bytes are decoded char by char and lower-cased like BinaryDictionary.toKey, without
+     * building the word, so a binary search step doesn't allocate.
+     */
+    private int comparePrefix(int index, CharSequence keyPrefix) {
+        int pos = offset(index);
+        int end = offset(index + 1);
+        int n = keyPrefix.length();
+        int i = 0;
+        while (i < n) {
+            // The word's key is shorter than the prefix
+            if (pos >= end) return -1;
+            int b = buffer.get(pos) & 0xFF;
+            int cp = codePointAt(pos, b);
+            pos += sequenceLength(b);
+
+            if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                char a = Character.toLowerCase((char) cp);
+                char k = keyPrefix.charAt(i++);
+                if (a != k) return a < k ? -1 : 1;
+            } else {
+                // toKey lower-cases UTF-16 chars one by one, which leaves surrogates unchanged
+                char high = Character.highSurrogate(cp);
+                char k = keyPrefix.charAt(i++);
+                if (high != k) return high < k ? -1 : 1;
+                if (i == n) break;
+                char low = Character.lowSurrogate(cp);
+                k = keyPrefix.charAt(i++);
+                if (low != k) return low < k ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Code point of the UTF-8 sequence at 'pos', whose first byte is 'b'.
+     */
+    private int codePointAt(int pos, int b) {
+        if (b < 0x80) return b;
+        if (b < 0xE0) return ((b & 0x1F) << 6) | (buffer.get(pos + 1) & 0x3F);
+        if (b < 0xF0) {
+            return ((b & 0x0F) << 12) | ((buffer.get(pos + 1) & 0x3F) << 6) | (buffer.get(pos + 2) & 0x3F);
+        }
+        return ((b & 0x07) << 18) | ((buffer.get(pos + 1) & 0x3F) << 12)
+                | ((buffer.get(pos + 2) & 0x3F) << 6) | (buffer.get(pos + 3) & 0x3F);
+    }
+
+    private static int sequenceLength(int b) {
+        return b < 0x80 ? 1 : b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4;
+    }
+
+    protected String decode(int start, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = buffer.get(start + i);
+        return new String(bytes, UTF8);
+    }
+}
@@ -0,0 +1,354 @@
+package com.app.bubble;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Count-based next-word model: unigram, bigram and trigram counts with "stupid backoff" scoring.
+ *
+ *   S(w | a b) = c(a b w) / c(a b)            if the trigram was seen
+ *              = 0.4 * c(b w) / c(b *)        else if the bigram was seen
+ *              = 0.4 * 0.4 * c(w) / N         otherwise
+ *
+ * Trigram keys pack three 21-bit word IDs into one long. The tables and the vocabulary stay under a
+ * memory budget: when they grow past it, entries with the lowest counts are dropped (the totals of the
+ * remaining words are kept, so pruned pairs simply back off to the lower order). Words left without any
+ * n-gram and with a low count are dropped too, and the remaining words get dense IDs again.
+ */
+public class NgramModel {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 4L * 1024 * 1024;
+
+    public interface TrigramVisitor {
+        void visit(int firstId, int secondId, int nextId, int count);
+    }
+
+    private static final double BACKOFF = 0.4;
+    private static final int ID_BITS = 21;
+    private static final int MAX_ID = (1 << ID_BITS) - 1;
+    // The budget is only checked every few updates, pruning goes down to this share of it
+    private static final int BUDGET_CHECK_INTERVAL = 256;
+    private static final double PRUNE_TARGET = 0.75;
+
+    // Replaced (with new IDs) when pruning drops words
+    private Vocabulary vocabulary;
+    private final long memoryBudget;
+    private NgramTable bigrams;
+    private LongIntMap trigrams;
+    // Times a word was seen as the next word, and as the previous word of a pair
+    private int[] unigramCounts;
+    private int[] contextCounts;
+    private long totalCount;
+    private int updatesSinceCheck = 0;
+
+    public NgramModel() {
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    public NgramModel(long memoryBudget) {
+        this(new Vocabulary(), memoryBudget);
+    }
+
+    private NgramModel(Vocabulary vocabulary, long memoryBudget) {
+        this.vocabulary = vocabulary;
+        this.memoryBudget = memoryBudget;
+        this.bigrams = new NgramTable(vocabulary);
+        this.trigrams = new LongIntMap(256);
+        this.unigramCounts = new int[64];
+        this.contextCounts = new int[64];
+    }
+
+    public static long pack(int firstId, int secondId, int nextId) {
+        return ((long) firstId << (2 * ID_BITS)) | ((long) secondId << ID_BITS) | nextId;
+    }
+
+    /**
+     * Counts one occurrence of 'next' after 'previous' (and after 'previous2 previous' if given).
+     */
+    public void learn(String previous2, String previous, String next) {
+        int p = vocabulary.intern(previous);
+        int n = vocabulary.intern(next);
+        addBigramIds(p, n, 1);
+        if (previous2 != null) {
+            addTrigramIds(vocabulary.intern(previous2), p, n, 1);
+        }
+        checkBudget();
+    }
+
+    public void addBigram(String previous, String next, int count) {
+        addBigramIds(vocabulary.intern(previous), vocabulary.intern(next), count);
+    }
+
+    public void addBigramIds(int previousId, int nextId, int count) {
+        ensureCapacity(Math.max(previousId, nextId));
+        bigrams.incrementIds(previousId, nextId, count);
+        unigramCounts[nextId] += count;
+        contextCounts[previousId] += count;
+        totalCount += count;
+    }
+
+    /**
+     * Counts occurrences of a word without context (e.g. from imported text).
+     */
+    public void addUnigram(String word, int count) {
+        int id = vocabulary.intern(word);
+        ensureCapacity(id);
+        unigramCounts[id] += count;
+        totalCount += count;
+        // Imports intern many words that no n-gram refers to
+        checkBudget();
+    }
+
+    /**
+     * Restores the exact unigram and context totals of a word (snapshot loading; these also
+     * include pruned pairs and imported text, so they cannot be derived from the pair list).
+     */
+    public void setTotalsIds(int id, int unigramCount, int contextCount) {
+        ensureCapacity(id);
+        totalCount += unigramCount - unigramCounts[id];
+        unigramCounts[id] = unigramCount;
+        contextCounts[id] = contextCount;
+    }
+
+    public int getContextCount(int id) {
+        return id >= 0 && id < contextCounts.length ? contextCounts[id] : 0;
+    }
+
+    public void addTrigramIds(int firstId, int secondId, int nextId, int count) {
+        // IDs beyond 21 bits cannot be packed; such trigrams back off to the bigram
+        if (firstId > MAX_ID || secondId > MAX_ID || nextId > MAX_ID) return;
+        trigrams.add(pack(firstId, secondId, nextId), count);
+    }
+
+    /**
+     * Returns up to 'limit' likely next words after 'previous2 previous', best first.
+     * 'previous2' may be null. Candidates are the followers of 'previous' only,
+     * ranked through a bounded heap (O(followers * log limit)).
+     */
+    public List<String> predict(String previous2, String previous, int limit) {
+        List<String> result = new ArrayList<>();
+        int p = vocabulary.getId(previous);
+        int followers = bigrams.followerCount(p);
+        if (limit <= 0 || followers == 0) return result;
+
+        int a = previous2 != null ? vocabulary.getId(previous2) : -1;
+        int contextPair = a >= 0 ? bigrams.getCountIds(a, p) : 0;
+
+        BoundedTopK top = new BoundedTopK(limit);
+        for (int i = 0; i < followers; i++) {
+            int n = bigrams.followerAt(p, i);
+            top.offer(n, score(a, p, n, contextPair));
+        }
+
+        int[] ids = new int[top.size()];
+        int count = top.drainDescending(ids);
+        for (int i = 0; i < count; i++) result.add(vocabulary.getWord(ids[i]));
+        return result;
+    }
+
+    /**
+     * Stupid-backoff score of 'nextId' after ('firstId', 'secondId'); firstId may be -1.
+     * 'contextPair' is c(first second), passed in so callers ranking many words look it up once.
+     */
+    public double score(int firstId, int secondId, int nextId, int contextPair) {
+        double weight = 1.0;
+        if (firstId >= 0 && firstId <= MAX_ID && secondId <= MAX_ID && nextId <= MAX_ID) {
+            int c3 = trigrams.get(pack(firstId, secondId, nextId));
+            // The context pair may have been pruned (or learned before trigrams existed)
+            if (c3 > 0) return (double) c3 / Math.max(contextPair, c3);
+            weight = BACKOFF;
+        }
+        if (secondId >= 0 && secondId < contextCounts.length && contextCounts[secondId] > 0) {
+            int c2 = bigrams.getCountIds(secondId, nextId);
+            if (c2 > 0) return weight * c2 / contextCounts[secondId];
+        }
+        weight *= BACKOFF;
+        if (totalCount == 0 || nextId < 0 || nextId >= unigramCounts.length) return 0;
+        return weight * unigramCounts[nextId] / totalCount;
+    }
+
+    /**
+     * Score of a word that was never seen after this context, given its unigram probability from
+     * another source (the bundled lexicon): the same backoff weight as the unigram level of score().
+     */
+    public double backoffScore(int firstId, double unigramProbability) {
+        double weight = firstId >= 0 ? BACKOFF : 1.0;
+        return weight * BACKOFF * unigramProbability;
+    }
+
+    public int getUnigramCount(int id) {
+        return id >= 0 && id < unigramCounts.length ? unigramCounts[id] : 0;
+    }
+
+    public int getBigramCountIds(int previousId, int nextId) {
+        return previousId >= 0 && nextId >= 0 ? bigrams.getCountIds(previousId, nextId) : 0;
+    }
+
+    /** Number of distinct words seen after 'previousId' (0 for -1). */
+    public int followerCount(int previousId) {
+        return bigrams.followerCount(previousId);
+    }
+
+    public int followerAt(int previousId, int i) {
+        return bigrams.followerAt(previousId, i);
+    }
+
+    public int getBigramCount(String previous, String next) {
+        return bigrams.getCount(previous, next);
+    }
+
+    public int getTrigramCount(String previous2, String previous, String next) {
+        int a = vocabulary.getId(previous2);
+        int p = vocabulary.getId(previous);
+        int n = vocabulary.getId(next);
+        if (a < 0 || p < 0 || n < 0 || a > MAX_ID || p > MAX_ID || n > MAX_ID) return 0;
+        return trigrams.get(pack(a, p, n));
+    }
+
+    public Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    public int bigramSize() {
+        return bigrams.size();
+    }
+
+    public int trigramSize() {
+        return trigrams.size();
+    }
+
+    public void forEachBigram(NgramTable.Visitor visitor) {
+        bigrams.forEach(visitor);
+    }
+
+    public void forEachTrigram(TrigramVisitor visitor) {
+        long mask = MAX_ID;
+        for (int slot = 0; slot < trigrams.capacity(); slot++) {
+            if (!trigrams.isUsed(slot)) continue;
+            long key = trigrams.keyAt(slot);
+            visitor.visit((int) (key >>> (2 * ID_BITS)), (int) ((key >>> ID_BITS) & mask),
+                    (int) (key & mask), trigrams.valueAt(slot));
+        }
+    }
+
+    /** Approximate heap cost in bytes of the count tables and the vocabulary. */
+    public long memoryBytes() {
+        return bigrams.memoryBytes() + trigrams.memoryBytes() + (long) unigramCounts.length * 8
+                + vocabulary.memoryBytes();
+    }
+
+    /**
+     * Drops the lowest-count n-grams and words until the model fits in PRUNE_TARGET of the budget.
+     * Trigrams and bigrams are pruned at the same count threshold, so every kept trigram
+     * still has its bigram (a trigram count never exceeds the count of its last pair).
+     */
+    public void enforceBudget() {
+        if (memoryBytes() <= memoryBudget) return;
+
+        long target = (long) (memoryBudget * PRUNE_TARGET);
+        int threshold = 1;
+        while (memoryBytes() > target && vocabulary.size() > 0) {
+            prune(threshold);
+            threshold++;
+        }
+    }
+
+    /**
+     * Read-only copy for readers on other threads (or the snapshot writer thread).
+     * Costs one copy of the count tables (bounded by the memory budget); the vocabulary and
+     * the follower lists are shared.
+     */
+    public NgramModel snapshot() {
+        Vocabulary vocabularySnapshot = vocabulary.snapshot();
+        NgramModel c = new NgramModel(vocabularySnapshot, memoryBudget);
+        c.bigrams = bigrams.snapshot(vocabularySnapshot);
+        c.trigrams = trigrams.copy();
+        c.unigramCounts = unigramCounts.clone();
+        c.contextCounts = contextCounts.clone();
+        c.totalCount = totalCount;
+        return c;
+    }
+
+    // --- Internal helpers ---
+
+    private void checkBudget() {
+        if (++updatesSinceCheck >= BUDGET_CHECK_INTERVAL) {
+            updatesSinceCheck = 0;
+            enforceBudget();
+        }
+    }
+
+    /**
+     * Rebuilds the model without the n-grams whose count is <= threshold, and without the words that
+     * no kept n-gram refers to and whose own count is <= threshold. The kept words get new dense IDs
+     * (in their old order) in a new vocabulary; published snapshots keep the old one.
+     * Rebuilding (instead of removing in place) also shrinks the backing arrays.
+     */
+    private void prune(final int threshold) {
+        int oldSize = vocabulary.size();
+        final boolean[] keep = new boolean[oldSize];
+        for (int id = 0; id < oldSize; id++) keep[id] = unigramCounts[id] > threshold;
+        bigrams.forEach(new NgramTable.Visitor() {
+            @Override
+            public void visit(int previousId, int nextId, int count) {
+                if (count > threshold) keep[previousId] = keep[nextId] = true;
+            }
+        });
+        long mask = MAX_ID;
+        int keptTrigramCount = 0;
+        for (int slot = 0; slot < trigrams.capacity(); slot++) {
+            if (!trigrams.isUsed(slot) || trigrams.valueAt(slot) <= threshold) continue;
+            long key = trigrams.keyAt(slot);
+            keep[(int) (key >>> (2 * ID_BITS))] = true;
+            keep[(int) ((key >>> ID_BITS) & mask)] = true;
+            keep[(int) (key & mask)] = true;
+            keptTrigramCount++;
+        }
+
+        final Vocabulary keptVocabulary = new Vocabulary();
+        final int[] idMap = new int[oldSize];
+        for (int id = 0; id < oldSize; id++) {
+            idMap[id] = keep[id] ? keptVocabulary.intern(vocabulary.getWord(id)) : -1;
+        }
+        int[] keptUnigrams = new int[Math.max(keptVocabulary.size(), 64)];
+        int[] keptContexts = new int[keptUnigrams.length];
+        for (int id = 0; id < oldSize; id++) {
+            if (idMap[id] >= 0) {
+                keptUnigrams[idMap[id]] = unigramCounts[id];
+                keptContexts[idMap[id]] = contextCounts[id];
+            } else {
+                totalCount -= unigramCounts[id];
+            }
+        }
+
+        final NgramTable keptBigrams = new NgramTable(keptVocabulary);
+        bigrams.forEach(new NgramTable.Visitor() {
+            @Override
+            public void visit(int previousId, int nextId, int count) {
+                if (count > threshold) keptBigrams.incrementIds(idMap[previousId], idMap[nextId], count);
+            }
+        });
+
+        LongIntMap keptTrigrams = new LongIntMap(keptTrigramCount);
+        for (int slot = 0; slot < trigrams.capacity(); slot++) {
+            if (!trigrams.isUsed(slot) || trigrams.valueAt(slot) <= threshold) continue;
+            long key = trigrams.keyAt(slot);
+            keptTrigrams.put(pack(idMap[(int) (key >>> (2 * ID_BITS))], idMap[(int) ((key >>> ID_BITS) & mask)],
+                    idMap[(int) (key & mask)]), trigrams.valueAt(slot));
+        }
+
+        vocabulary = keptVocabulary;
+        bigrams = keptBigrams;
+        trigrams = keptTrigrams;
+        unigramCounts = keptUnigrams;
+        contextCounts = keptContexts;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < unigramCounts.length) return;
+        int cap = Math.max(id + 1, unigramCounts.length * 2);
+        unigramCounts = Arrays.copyOf(unigramCounts, cap);
+        contextCounts = Arrays.copyOf(contextCounts, cap);
+    }
+}
@@ -0,0 +1,131 @@
+package com.app.bubble;
+
+import java.util.Arrays;
+
+/**
+ * Bigram counts over interned word IDs.
+ * Each pair is one entry in a primitive LongIntMap (key = previousId << 32 | nextId),
+ * and every previous word keeps an int[] of its follower IDs for fast "next word" lookups.
+ */
+public class NgramTable {
+
+    public interface Visitor {
+        void visit(int previousId, int nextId, int count);
+    }
+
+    private final Vocabulary vocabulary;
+    private final LongIntMap counts;
+    // followers[previousId] = IDs seen after that word (first followerCount[previousId] entries used)
+    private int[][] followers;
+    private int[] followerCount;
+
+    public NgramTable() {
+        this(new Vocabulary());
+    }
+
+    /** Creates an empty table that interns into an existing (shared) vocabulary. */
+    public NgramTable(Vocabulary vocabulary) {
+        this(vocabulary, new LongIntMap(256), new int[64][], new int[64]);
+    }
+
+    private NgramTable(Vocabulary vocabulary, LongIntMap counts, int[][] followers, int[] followerCount) {
+        this.vocabulary = vocabulary;
+        this.counts = counts;
+        this.followers = followers;
+        this.followerCount = followerCount;
+    }
+
+    public static long pack(int previousId, int nextId) {
+        return ((long) previousId << 32) | (nextId & 0xFFFFFFFFL);
+    }
+
+    public void increment(String previous, String next, int by) {
+        incrementIds(vocabulary.intern(previous), vocabulary.intern(next), by);
+    }
+
+    public void incrementIds(int previousId, int nextId, int by) {
+        if (counts.add(pack(previousId, nextId), by) == by) {
+            addFollower(previousId, nextId);
+        }
+    }
+
+    public int getCount(String previous, String next) {
+        int p = vocabulary.getId(previous);
+        int n = vocabulary.getId(next);
+        if (p < 0 || n < 0) return 0;
+        return counts.get(pack(p, n));
+    }
+
+    public int getCountIds(int previousId, int nextId) {
+        return counts.get(pack(previousId, nextId));
+    }
+
+    /** Number of distinct words seen after 'previousId'. */
+    public int followerCount(int previousId) {
+        return previousId >= 0 && previousId < followerCount.length ? followerCount[previousId] : 0;
+    }
+
+    /** The i-th follower ID of 'previousId' (in insertion order). */
+    public int followerAt(int previousId, int i) {
+        return followers[previousId][i];
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int slot = 0; slot < counts.capacity(); slot++) {
+            if (!counts.isUsed(slot)) continue;
+            long key = counts.keyAt(slot);
+            visitor.visit((int) (key >>> 32), (int) key, counts.valueAt(slot));
+        }
+    }
+
+    public int size() {
+        return counts.size();
+    }
+
+    public Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    /** Approximate heap cost in bytes (count map plus follower lists). */
+    public long memoryBytes() {
+        long bytes = counts.memoryBytes() + (long) followers.length * 8;
+        for (int[] list : followers) {
+            if (list != null) bytes += 16 + (long) list.length * 4;
+        }
+        return bytes;
+    }
+
+    /** Read-only copy, e.g. for readers on other threads or the snapshot writer thread. */
+    public NgramTable snapshot() {
+        return snapshot(vocabulary.snapshot());
+    }
+
+    /**
+     * Read-only copy over the given vocabulary snapshot. The counts are copied; follower lists are
+     * shared, because the writer only appends past the length the snapshot remembers (or replaces
+     * the array when it grows).
+     */
+    NgramTable snapshot(Vocabulary vocabularySnapshot) {
+        return new NgramTable(vocabularySnapshot, counts.copy(), followers.clone(), followerCount.clone());
+    }
+
+    // --- Internal helpers ---
+
+    private void addFollower(int previousId, int nextId) {
+        if (previousId >= followers.length) {
+            int cap = Math.max(previousId + 1, followers.length * 2);
+            followers = Arrays.copyOf(followers, cap);
+            followerCount = Arrays.copyOf(followerCount, cap);
+        }
+        int[] list = followers[previousId];
+        int n = followerCount[previousId];
+        if (list == null) {
+            list = new int[4];
+        } else if (n == list.length) {
+            list = Arrays.copyOf(list, n * 2);
+        }
+        list[n] = nextId;
+        followers[previousId] = list;
+        followerCount[previousId] = n + 1;
+    }
+}
@@ -2,220 +2,1176 @@ package com.app.bubble;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.text.TextUtils;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles "Type Memory", Dictionary Suggestions, Next-Word Prediction, and Auto-Correction.
  * UPDATED: Added Batch Learning to prevent crashes when copying large texts.
+ *
+ * Threading: all learning runs on one writer thread, which owns the mutable indexes and publishes
+ * immutable views of them (Index). Suggestion and correction calls only read the latest view,
+ * so typing never waits for (or sees half of) a large import.
+ *
+ * NEW: One engine per language (LanguageUtils codes), each with its own snapshot, journal and lexicon.
+ * Engines are loaded on demand for the active language and kept in a small LRU; evicted engines
+ * finish their queued learning, close their files and are dropped.
  */
 public class PredictionEngine {
 
-    private static PredictionEngine instance;
+    public static final String DEFAULT_LANGUAGE = "en";
+    // Resident engines at most (each holds its tries, n-gram tables and correction index)
+    private static final int MAX_RESIDENT_MODELS = 3;
+    private static final long RELEASE_TIMEOUT_MS = 2000;
+
+    // Resident engines by language code, least recently used first
+    private static final LinkedHashMap<String, PredictionEngine> models = new LinkedHashMap<>(8, 0.75f, true);
+    // Evicted engines that may still be writing their files, by language code
+    private static final Map<String, CountDownLatch> releasing = new HashMap<>();
+    // NEW: Engines being loaded (by prewarm or a first getInstance), by language code
+    private static final Map<String, FutureTask<PredictionEngine>> loading = new HashMap<>();
+    // NEW: Tasks waiting for an engine that is not loaded yet, by language code (the load runs them in order)
+    private static final Map<String, List<EngineTask>> waiting = new HashMap<>();
+    private static String activeLanguage = DEFAULT_LANGUAGE;
+
+    private final String language;
     private SharedPreferences prefs;
+    // Memory-mapped snapshot of the dictionary (null until the first snapshot is written)
+    private BinaryDictionary snapshot;
+    private File dictFile;
+    // NEW: Bundled base vocabulary (memory-mapped asset, null if the APK has none)
+    private final Lexicon lexicon;
+
+    // --- Writer side (writer thread only, or the constructor before the writer starts) ---
+    // Words learned since the snapshot was written
     private Set<String> userDictionary;
-    // Map to store PreviousWord -> List of Likely Next Words
-    private Map<String, List<String>> bigramMap; 
+    // Prefix index over userDictionary plus every word with a usage count (lower-cased keys),
+    // annotated with unigram frequencies for ranked suggestions
+    private PrefixTrie wordIndex;
+    // Unigram/bigram/trigram counts over interned word IDs (memory-bounded)
+    private NgramModel ngrams;
+    private boolean ngramPublishPending = false;
+    // Single writer: every learn call is queued here and applied in order
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+    // Set when the engine is evicted; learn calls through stale references are dropped
+    private volatile boolean released = false;
+
+    // Deletion-neighbourhood index of the heap words (userDictionary) for Auto-Correction (built by the writer,
+    // read lock-free); the mapped snapshot and lexicon are searched in place instead
+    private final SymSpellIndex correctionIndex = new SymSpellIndex();
+    private volatile boolean correctionIndexReady = false;
+
+    // --- Reader side ---
+    // Latest published view, replaced as a whole by the writer
+    private volatile Index index;
+    // Reused distance kernel for getBestMatch (main thread only)
+    private final EditDistance editDistance = new EditDistance();
+    // Key geometry of the current layout, for weighted corrections (null until the keyboard is laid out)
+    private static volatile KeyProximity keyLayout;
+    // Corrections reach as far as two plain edits
+    private static final int MAX_CORRECTION_COST = 2 * KeyProximity.EDIT_COST;
+
+    // Trie snapshots are O(1) and published after every change; n-gram snapshots copy the count
+    // tables, so they are published at most once per this delay
+    private static final long NGRAM_PUBLISH_DELAY_MS = 300;
     
     private static final String PREFS_NAME = "BubbleDict";
+    // Legacy SharedPreferences storage, migrated once into the binary snapshot
     private static final String KEY_WORDS = "UserWords";
     private static final String KEY_BIGRAMS = "UserBigrams";
+    private static final String DICT_FILE = "bubble_dict.bin";
+    private static final String JOURNAL_FILE = "bubble_learn.journal";
+
+    // Learn events since the last snapshot
+    private LearnJournal journal;
+
+    // Scratch buffers for rankSuggestions (main thread only)
+    private final BoundedTopK rankedTop = new BoundedTopK(5);
+    private final int[] rankedIds = new int[5];
+    private final String[] frequentWords = new String[5];
+    private final int[] frequentCounts = new int[5];
+    private final PriorityQueue<PrefixTrie.Node> frequentQueue = PrefixTrie.newFrequencyQueue();
+    // One extra slot: the prefix itself may be among the most frequent lexicon words (at most Lexicon.TOP_WORDS)
+    private final BoundedTopK lexiconTop = new BoundedTopK(6);
+    private final int[] lexiconIds = new int[6];
+
+    /**
+     * Immutable view of the indexes used by the read path.
+     */
+    private static final class Index {
+        final PrefixTrie words;
+        final NgramModel ngrams;
+
+        Index(PrefixTrie words, NgramModel ngrams) {
+            this.words = words;
+            this.ngrams = ngrams;
+        }
+    }
 
-    private final String[] BASE_DICT = {
-        "the", "and", "that", "have", "for", "not", "with", "you", "this", "but", "his", "from",
-        "they", "we", "say", "her", "she", "or", "an", "will", "my", "one", "all", "would",
-        "there", "their", "what", "so", "up", "out", "if", "about", "who", "get", "which",
-        "go", "me", "when", "make", "can", "like", "time", "no", "just", "him", "know",
-        "take", "people", "into", "year", "your", "good", "some", "could", "them", "see",
-        "other", "than", "then", "now", "look", "only", "come", "its", "over", "think",
-        "also", "back", "after", "use", "two", "how", "our", "work", "first", "well",
-        "way", "even", "new", "want", "because", "any", "these", "give", "day", "most",
-        "apple", "application", "app", "bubble", "keyboard", "translate", "love", "are"
-    };
-
-    private PredictionEngine(Context context) {
+    private PredictionEngine(Context context, String language) {
+        this.language = language;
         prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         userDictionary = new HashSet<>();
-        bigramMap = new HashMap<>();
-        
-        // Load saved words
-        Set<String> saved = prefs.getStringSet(KEY_WORDS, new HashSet<String>());
-        if (saved != null) {
-            userDictionary.addAll(saved);
+        ngrams = new NgramModel(NgramModel.DEFAULT_MEMORY_BUDGET);
+        wordIndex = new PrefixTrie();
+        dictFile = new File(context.getFilesDir(), fileName(DICT_FILE, language));
+        lexicon = Lexicon.openAsset(context, language);
+
+        // Map the binary snapshot: no parsing, words are decoded on demand by lookups
+        snapshot = BinaryDictionary.open(dictFile);
+        journal = new LearnJournal(context.getFilesDir(), fileName(JOURNAL_FILE, language));
+
+        // Until the writer has read the learned data, suggestions come from the mapped snapshot and lexicon
+        index = new Index(wordIndex.snapshot(), ngrams.snapshot());
+        loadLearnedData();
+        buildCorrectionIndex();
+    }
+
+    /**
+     * Reads the heap side of the engine as the first writer task: the snapshot's n-grams, the legacy
+     * SharedPreferences data (once) and the journal, then publishes them.
+     * The engine is usable before this (completions from the mapped files); learn calls queued meanwhile run after it.
+     */
+    private void loadLearnedData() {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean migrateLegacy = false;
+                if (snapshot != null) {
+                    // Load N-grams (Context History)
+                    snapshot.readNgrams(ngrams);
+                } else if (isDefaultLanguage()) {
+                    // First start with this format: read the old SharedPreferences data once
+                    Set<String> saved = prefs.getStringSet(KEY_WORDS, null);
+                    if (saved != null) {
+                        userDictionary.addAll(saved);
+                        migrateLegacy = true;
+                    }
+                    loadBigrams();
+                    migrateLegacy |= ngrams.bigramSize() > 0;
+                }
+                for (String word : userDictionary) {
+                    wordIndex.add(word);
+                }
+                Vocabulary vocabulary = ngrams.getVocabulary();
+                for (int id = 0; id < vocabulary.size(); id++) {
+                    indexFrequency(vocabulary.getWord(id));
+                }
+
+                // Replay words/pairs learned after the last snapshot
+                // (buildCorrectionIndex indexes all of userDictionary afterwards)
+                long snapshotSequence = snapshot != null ? snapshot.journalSequence() : -1;
+                journal.replay(new LearnJournal.Replayer() {
+                    @Override
+                    public void onWord(String word) {
+                        addWord(word, false);
+                    }
+
+                    @Override
+                    public void onWordCount(String word, int count) {
+                        addWordCount(word, count, false);
+                    }
+
+                    @Override
+                    public void onBigram(String previous, String next) {
+                        addNextWord(null, previous, next);
+                    }
+
+                    @Override
+                    public void onTrigram(String previous2, String previous, String next) {
+                        addNextWord(previous2, previous, next);
+                    }
+                }, snapshotSequence);
+                ngrams.enforceBudget();
+
+                if (migrateLegacy) {
+                    writeSnapshot();
+                }
+
+                index = new Index(wordIndex.snapshot(), ngrams.snapshot());
+            }
+        });
+    }
+
+    /**
+     * Builds the SymSpell index of userDictionary right after loadLearnedData.
+     * Snapshot and lexicon words are not indexed: getBestMatch walks the mapped lists in place
+     * (MappedWordList.collectNear), so nothing of them is decoded at load.
+     * Learn calls queued meanwhile run after it; until it is ready, getBestMatch falls back to
+     * scanning the words of the published trie.
+     */
+    private void buildCorrectionIndex() {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                correctionIndex.addAll(userDictionary);
+                correctionIndexReady = true;
+            }
+        });
+    }
+
+    /**
+     * Work for an engine once it is loaded (see whenLoaded).
+     */
+    public interface EngineTask {
+        void run(PredictionEngine engine);
+    }
+
+    /**
+     * Returns the engine of the active language (see setActiveLanguage).
+     */
+    public static PredictionEngine getInstance(Context context) {
+        return getInstance(context, getActiveLanguage());
+    }
+
+    /**
+     * Returns the engine of a language code, loading it if it is not resident.
+     * Loading only maps the snapshot and lexicon, so a switch stays fast and completions work right away.
+     * The learned n-grams and the journal are read into memory afterwards on the engine's writer thread,
+     * followed by the correction index.
+     * If prewarm() is already loading it, this waits for that load instead of starting another.
+     */
+    public static PredictionEngine getInstance(Context context, String languageCode) {
+        String language = normalizeLanguage(languageCode);
+        FutureTask<PredictionEngine> load;
+        synchronized (PredictionEngine.class) {
+            PredictionEngine engine = models.get(language);
+            if (engine != null) return engine;
+            load = loadTask(context, language);
         }
-        Collections.addAll(userDictionary, BASE_DICT);
-        
-        // Load Bigrams (Context History)
-        loadBigrams();
+        // Loads on this thread, unless another thread is already running the task
+        load.run();
+        return awaitLoad(load);
+    }
+
+    /**
+     * NEW: Starts loading the engine of the active language in the background (keystroke lane) and returns
+     * its ready-future. Cheap when the engine is resident or already loading.
+     */
+    public static Future<PredictionEngine> prewarm(Context context) {
+        return prewarm(context, getActiveLanguage());
     }
 
-    public static synchronized PredictionEngine getInstance(Context context) {
-        if (instance == null) {
-            instance = new PredictionEngine(context);
+    private static Future<PredictionEngine> prewarm(Context context, String languageCode) {
+        String language = normalizeLanguage(languageCode);
+        FutureTask<PredictionEngine> load;
+        synchronized (PredictionEngine.class) {
+            final PredictionEngine engine = models.get(language);
+            if (engine != null) {
+                FutureTask<PredictionEngine> done = new FutureTask<>(new Callable<PredictionEngine>() {
+                    @Override
+                    public PredictionEngine call() {
+                        return engine;
+                    }
+                });
+                done.run();
+                return done;
+            }
+            // Already loading: queued (or running) once is enough
+            load = loading.get(language);
+            if (load != null) return load;
+            load = loadTask(context, language);
         }
-        return instance;
+        TaskScheduler.submit(TaskScheduler.LANE_KEYSTROKE, load);
+        return load;
+    }
+
+    /**
+     * NEW: The engine of the active language if it is resident, otherwise null (and a prewarm is started).
+     * Never waits for disk, so the key path can show a degraded answer (no suggestions) meanwhile.
+     */
+    public static PredictionEngine getIfLoaded(Context context) {
+        synchronized (PredictionEngine.class) {
+            PredictionEngine engine = models.get(activeLanguage);
+            if (engine != null) return engine;
+        }
+        prewarm(context);
+        return null;
+    }
+
+    /**
+     * NEW: Runs 'task' with the engine of the active language: right away if it is resident, otherwise right
+     * after the load finishes, on the loading thread. Waiting tasks join the pending load (nothing is queued per
+     * task, so none can be lost) and run in the order they were added.
+     */
+    public static void whenLoaded(Context context, EngineTask task) {
+        String language = getActiveLanguage();
+        PredictionEngine engine;
+        synchronized (PredictionEngine.class) {
+            engine = models.get(language);
+            if (engine == null) {
+                List<EngineTask> tasks = waiting.get(language);
+                if (tasks == null) {
+                    tasks = new ArrayList<>();
+                    waiting.put(language, tasks);
+                }
+                tasks.add(task);
+            }
+        }
+        if (engine != null) {
+            task.run(engine);
+        } else {
+            prewarm(context, language);
+        }
+    }
+
+    /**
+     * The pending load of 'language', created if there is none. Caller holds the class lock.
+     */
+    private static FutureTask<PredictionEngine> loadTask(Context context, final String language) {
+        FutureTask<PredictionEngine> load = loading.get(language);
+        if (load == null) {
+            final Context appContext = context.getApplicationContext();
+            load = new FutureTask<>(new Callable<PredictionEngine>() {
+                @Override
+                public PredictionEngine call() {
+                    // An evicted engine of this language may still be appending to the same files
+                    CountDownLatch previous;
+                    synchronized (PredictionEngine.class) {
+                        previous = releasing.remove(language);
+                    }
+                    if (previous != null) awaitQuietly(previous);
+
+                    PredictionEngine engine = new PredictionEngine(appContext, language);
+                    List<EngineTask> tasks;
+                    synchronized (PredictionEngine.class) {
+                        models.put(language, engine);
+                        loading.remove(language);
+                        tasks = waiting.remove(language);
+                        evictIfNeeded();
+                    }
+                    if (tasks != null) {
+                        for (EngineTask task : tasks) {
+                            try {
+                                task.run(engine);
+                            } catch (RuntimeException e) {
+                                // One failed task must not fail the load
+                                e.printStackTrace();
+                            }
+                        }
+                    }
+                    return engine;
+                }
+            });
+            loading.put(language, load);
+        }
+        return load;
+    }
+
+    private static PredictionEngine awaitLoad(FutureTask<PredictionEngine> load) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return load.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // Failed load: drop it so the next call retries, and fail like a direct load would
+                    synchronized (PredictionEngine.class) {
+                        loading.values().remove(load);
+                    }
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Selects the language whose engine getInstance(Context) returns. Unknown codes (and "auto") mean DEFAULT_LANGUAGE.
+     * The engine itself is only loaded when it is first used.
+     */
+    public static synchronized void setActiveLanguage(String languageCode) {
+        activeLanguage = normalizeLanguage(languageCode);
+    }
+
+    public static synchronized String getActiveLanguage() {
+        return activeLanguage;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * Drops the least recently used engines beyond MAX_RESIDENT_MODELS (never the active one).
+     */
+    private static void evictIfNeeded() {
+        Iterator<Map.Entry<String, PredictionEngine>> it = models.entrySet().iterator();
+        while (models.size() > MAX_RESIDENT_MODELS && it.hasNext()) {
+            Map.Entry<String, PredictionEngine> eldest = it.next();
+            if (eldest.getKey().equals(activeLanguage)) continue;
+            it.remove();
+            releasing.put(eldest.getKey(), eldest.getValue().release());
+        }
+    }
+
+    /**
+     * Stops the engine after its queued learning is applied and journaled.
+     * The returned latch opens once its journal is closed, so the files can be reopened safely.
+     */
+    private CountDownLatch release() {
+        released = true;
+        final CountDownLatch closed = new CountDownLatch(1);
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                journal.close(new Runnable() {
+                    @Override
+                    public void run() {
+                        closed.countDown();
+                    }
+                });
+            }
+        });
+        writer.shutdown();
+        return closed;
+    }
+
+    /**
+     * Queues a learn task on the writer thread (dropped once the engine is released).
+     */
+    private void submit(Runnable task) {
+        if (released) return;
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Released between the check and the call
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(RELEASE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String normalizeLanguage(String code) {
+        if (code == null) return DEFAULT_LANGUAGE;
+        for (String known : LanguageUtils.LANGUAGE_CODES) {
+            if (known.equalsIgnoreCase(code)) return known;
+        }
+        return DEFAULT_LANGUAGE;
+    }
+
+    private boolean isDefaultLanguage() {
+        return DEFAULT_LANGUAGE.equals(language);
+    }
+
+    /**
+     * Per-language file name: "bubble_dict.bin" -> "bubble_dict_fr.bin".
+     * The default language keeps the plain names, so existing English data is picked up as is.
+     */
+    private static String fileName(String name, String language) {
+        if (DEFAULT_LANGUAGE.equals(language)) return name;
+        int dot = name.lastIndexOf('.');
+        return name.substring(0, dot) + "_" + language + name.substring(dot);
     }
 
     /**
      * Returns a list of suggestions that start with the given prefix.
+     * Uses the prefix trie, so the cost depends on the prefix length and the number of results only.
      */
     public List<String> getSuggestions(String prefix) {
         List<String> results = new ArrayList<>();
         if (prefix == null || prefix.isEmpty()) return results;
 
-        String check = prefix.toLowerCase();
+        // Words equal to the prefix itself end at the prefix node, so they are skipped (includeSelf = false)
+        PrefixTrie words = index.words;
+        words.collect(words.find(prefix), false, 5, results);
+        if (snapshot != null) {
+            String key = BinaryDictionary.toKey(prefix);
+            int lo = snapshot.lowerBound(key, 0, snapshot.size());
+            int hi = snapshot.upperBound(key, lo, snapshot.size());
+            snapshot.collect(lo, hi, key, 5, results);
+        }
+        if (lexicon != null) {
+            String key = BinaryDictionary.toKey(prefix);
+            int lo = lexicon.lowerBound(key, 0, lexicon.size());
+            lexicon.collect(lo, lexicon.upperBound(key, lo, lexicon.size()), key, 5, results);
+        }
+        return mergeSuggestions(results);
+    }
+
+    /**
+     * One scoring pass over the completions of a prefix.
+     * Candidates are the context followers that match the prefix (already filtered by the caller) and the
+     * most frequent words of the prefix subtree (found best-first). All of them are scored with the n-gram
+     * model, where followers get their trigram/bigram probability and other words back off to their unigram
+     * frequency, and the best 5 are kept in a bounded heap. Remaining slots are filled alphabetically.
+     * The most frequent lexicon words of [lexiconLo, lexiconHi) compete with their corpus frequency;
+     * lexicon-only words are held in the heap as ~index, so they never collide with vocabulary IDs.
+     */
+    private List<String> rankSuggestions(Index idx, int previous2Id, int previousId, int[] followers, int followerCount,
+                                         PrefixTrie.Node node, String key, int lo, int hi,
+                                         int lexiconLo, int lexiconHi) {
+        NgramModel ngrams = idx.ngrams;
+        Vocabulary vocabulary = ngrams.getVocabulary();
+        int contextPair = ngrams.getBigramCountIds(previous2Id, previousId);
+
+        rankedTop.clear();
+        for (int i = 0; i < followerCount; i++) {
+            int id = followers[i];
+            // The prefix itself is not a suggestion
+            if (vocabulary.getWord(id).length() == key.length()) continue;
+            rankedTop.offer(id, ngrams.score(previous2Id, previousId, id, contextPair));
+        }
+        int found = idx.words.topByFrequency(node, false, 5, frequentWords, frequentCounts, frequentQueue);
+        for (int i = 0; i < found; i++) {
+            int id = vocabulary.getId(frequentWords[i]);
+            if (id >= 0) rankedTop.offer(id, ngrams.score(previous2Id, previousId, id, contextPair));
+        }
+        if (lexicon != null && lexiconHi > lexiconLo) {
+            lexiconTop.clear();
+            lexicon.topByFrequency(lexiconLo, lexiconHi, lexiconTop);
+            int n = lexiconTop.drainDescending(lexiconIds);
+            for (int i = 0; i < n; i++) {
+                String w = lexicon.getWord(lexiconIds[i]);
+                if (w.length() == key.length()) continue;
+                // A word the user has typed too keeps one entry (offer keeps the better score)
+                int id = vocabulary.getId(w);
+                rankedTop.offer(id >= 0 ? id : ~lexiconIds[i],
+                        ngrams.backoffScore(previous2Id, lexicon.probability(lexiconIds[i])));
+            }
+        }
+
+        List<String> ranked = new ArrayList<>(5);
+        int n = rankedTop.drainDescending(rankedIds);
+        for (int i = 0; i < n; i++) {
+            int id = rankedIds[i];
+            ranked.add(id >= 0 ? vocabulary.getWord(id) : lexicon.getWord(~id));
+        }
+        if (ranked.size() == 5) return ranked;
+
+        List<String> alphabetical = new ArrayList<>();
+        idx.words.collect(node, false, 5, alphabetical);
+        if (snapshot != null) snapshot.collect(lo, hi, key, 5, alphabetical);
+        if (lexicon != null) lexicon.collect(lexiconLo, lexiconHi, key, 5, alphabetical);
+        for (String w : mergeSuggestions(alphabetical)) {
+            if (ranked.size() == 5) break;
+            if (!ranked.contains(w)) ranked.add(w);
+        }
+        return ranked;
+    }
+
+    private static int contextId(NgramModel model, String word) {
+        if (word == null || word.trim().isEmpty()) return -1;
+        return model.getVocabulary().getId(word.toLowerCase().trim());
+    }
+
+    /**
+     * Merges the alphabetical results of the snapshot and the recent-words trie into one top-5 list.
+     */
+    private static List<String> mergeSuggestions(List<String> candidates) {
+        Collections.sort(candidates, BinaryDictionary.KEY_ORDER);
+        List<String> merged = new ArrayList<>(5);
+        String last = null;
+        for (String w : candidates) {
+            if (w.equals(last)) continue;
+            merged.add(w);
+            last = w;
+            if (merged.size() == 5) break;
+        }
+        return merged;
+    }
+
+    /**
+     * Creates a stateful suggestion cursor for the word currently being typed.
+     */
+    public SuggestionSession newSession() {
+        return new SuggestionSession();
+    }
+
+    /**
+     * Per-keystroke suggestion cursor.
+     * Keeps the trie node for every typed prefix on a stack, so push/pop only move one step
+     * from the previous node instead of searching again from the root.
+     * The published view is taken at reset(), so one word is always served from the same view.
+     */
+    public class SuggestionSession {
+        private Index view;
+        private PrefixTrie.Node[] stack = new PrefixTrie.Node[32];
+        // Matching index range of the snapshot for every prefix length
+        private int[] rangeLo = new int[32];
+        private int[] rangeHi = new int[32];
+        // Same for the lexicon
+        private int[] lexiconLo = new int[32];
+        private int[] lexiconHi = new int[32];
+        private final StringBuilder key = new StringBuilder();
+        private int length = 0;
+
+        // Context words and their followers that match the first k typed characters, for every k.
+        // Levels are filtered from the level below on demand, so each keystroke only narrows one list.
+        private String contextWord;
+        private String contextWord2;
+        private int contextId = -1;
+        private int context2Id = -1;
+        private int[][] contextLevels = new int[32][];
+        private int[] contextLevelSize = new int[32];
+        private int contextLevelsValid = 0;
+
+        private SuggestionSession() {
+            reset();
+        }
+
+        /** Narrows the cursor by one typed character. */
+        public void push(char c) {
+            if (length + 1 >= stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                rangeLo = Arrays.copyOf(rangeLo, stack.length);
+                rangeHi = Arrays.copyOf(rangeHi, stack.length);
+                lexiconLo = Arrays.copyOf(lexiconLo, stack.length);
+                lexiconHi = Arrays.copyOf(lexiconHi, stack.length);
+                contextLevels = Arrays.copyOf(contextLevels, stack.length);
+                contextLevelSize = Arrays.copyOf(contextLevelSize, stack.length);
+            }
+            // Once a prefix has no matches, every longer prefix has none either (null stays null)
+            stack[length + 1] = view.words.step(stack[length], c);
+            key.append(Character.toLowerCase(c));
+            // Narrow the previous ranges instead of searching the whole tables (compared in place, no copies)
+            if (snapshot != null) {
+                int lo = snapshot.lowerBound(key, rangeLo[length], rangeHi[length]);
+                rangeLo[length + 1] = lo;
+                rangeHi[length + 1] = snapshot.upperBound(key, lo, rangeHi[length]);
+            }
+            if (lexicon != null) {
+                int lo = lexicon.lowerBound(key, lexiconLo[length], lexiconHi[length]);
+                lexiconLo[length + 1] = lo;
+                lexiconHi[length + 1] = lexicon.upperBound(key, lo, lexiconHi[length]);
+            }
+            length++;
+            contextLevelsValid = Math.min(contextLevelsValid, length);
+        }
+
+        /** Widens the cursor again after a backspace. */
+        public void pop() {
+            if (length > 0) {
+                stack[length] = null;
+                key.setLength(length - 1);
+                length--;
+            }
+        }
+
+        /** Starts a new word. */
+        public void reset() {
+            for (int i = 1; i <= length; i++) stack[i] = null;
+            length = 0;
+            key.setLength(0);
+            // A newer view may have been published since the last word was learned
+            view = index;
+            contextWord = null;
+            contextWord2 = null;
+            contextId = -1;
+            context2Id = -1;
+            contextLevelsValid = 0;
+            stack[0] = view.words.getRoot();
+            rangeLo[0] = 0;
+            rangeHi[0] = snapshot != null ? snapshot.size() : 0;
+            lexiconLo[0] = 0;
+            lexiconHi[0] = lexicon != null ? lexicon.size() : 0;
+        }
+
+        /** Resets the cursor to an existing word (e.g. after undoing an auto-correction). */
+        public void load(CharSequence word) {
+            reset();
+            for (int i = 0; i < word.length(); i++) push(word.charAt(i));
+        }
+
+        /** Number of characters the cursor currently covers. */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Completions of the typed prefix ranked by the context words (either may be null) and frequency.
+         * Before the first character, the most likely next words after the context words.
+         */
+        public List<String> getSuggestions(String secondLastWord, String previousWord) {
+            if (length == 0) return predictNextWords(secondLastWord, previousWord);
+            setContext(secondLastWord, previousWord);
+            int level = contextLevel(length);
+            int hi = snapshot != null ? rangeHi[length] : 0;
+            return rankSuggestions(view, context2Id, contextId, contextLevels[level], contextLevelSize[level],
+                    stack[length], key.toString(), rangeLo[length], hi, lexiconLo[length], lexiconHi[length]);
+        }
+
+        private List<String> predictNextWords(String secondLastWord, String previousWord) {
+            if (previousWord == null) return new ArrayList<>();
+            String previous2 = secondLastWord != null ? secondLastWord.toLowerCase().trim() : null;
+            // No word is being typed yet, so the latest view is used rather than the one taken at reset()
+            return index.ngrams.predict(previous2, previousWord.toLowerCase().trim(), 5);
+        }
+
+        private void setContext(String secondLastWord, String previousWord) {
+            if (equalWords(previousWord, contextWord) && equalWords(secondLastWord, contextWord2)) return;
+            contextWord = previousWord;
+            contextWord2 = secondLastWord;
+            contextId = contextId(view.ngrams, previousWord);
+            context2Id = contextId >= 0 ? contextId(view.ngrams, secondLastWord) : -1;
+            contextLevelsValid = 0;
+        }
 
-        for (String word : userDictionary) {
-            if (word.toLowerCase().startsWith(check)) {
-                if (!word.equalsIgnoreCase(check)) {
-                    results.add(word);
+        /** Returns 'level', computing the missing filtered follower lists up to it. */
+        private int contextLevel(int level) {
+            NgramModel ngrams = view.ngrams;
+            if (contextLevelsValid == 0) {
+                int n = ngrams.followerCount(contextId);
+                int[] all = ensureLevel(0, n);
+                for (int i = 0; i < n; i++) all[i] = ngrams.followerAt(contextId, i);
+                contextLevelSize[0] = n;
+                contextLevelsValid = 1;
+            }
+            Vocabulary vocabulary = ngrams.getVocabulary();
+            for (int k = contextLevelsValid; k <= level; k++) {
+                int[] below = contextLevels[k - 1];
+                int[] out = ensureLevel(k, contextLevelSize[k - 1]);
+                char typed = key.charAt(k - 1);
+                int n = 0;
+                for (int i = 0; i < contextLevelSize[k - 1]; i++) {
+                    // Only the newly typed character needs checking
+                    String w = vocabulary.getWord(below[i]);
+                    if (w.length() >= k && Character.toLowerCase(w.charAt(k - 1)) == typed) out[n++] = below[i];
                 }
+                contextLevelSize[k] = n;
             }
+            contextLevelsValid = level + 1;
+            return level;
+        }
+
+        private int[] ensureLevel(int level, int capacity) {
+            if (contextLevels[level] == null || contextLevels[level].length < capacity) {
+                contextLevels[level] = new int[Math.max(capacity, 8)];
+            }
+            return contextLevels[level];
         }
-        Collections.sort(results);
-        if (results.size() > 5) return results.subList(0, 5);
-        return results;
     }
 
+    // --- Gesture Typing ---
+
     /**
-     * Returns suggestions based on the PREVIOUS word (Context).
+     * NEW: Decodes a glide over the keyboard into up to 'limit' words, best first (see GestureDecoder).
+     * The beam search walks the recent-words trie and the snapshot and lexicon prefix ranges together,
+     * so only prefixes of known words are ever extended.
      */
-    public List<String> getNextWordSuggestions(String previousWord) {
-        if (previousWord == null) return new ArrayList<>();
-        String key = previousWord.toLowerCase().trim();
-        
-        if (bigramMap.containsKey(key)) {
-            return new ArrayList<>(bigramMap.get(key));
+    public List<String> decodeGesture(GestureDecoder decoder, float[] xs, float[] ys, int count, int limit) {
+        return decoder.decode(xs, ys, count, new GestureDictionary(index), limit);
+    }
+
+    /**
+     * One prefix of a glide: its trie node and its ranges in the snapshot and the lexicon.
+     */
+    private static final class GestureCursor {
+        final String key;
+        final PrefixTrie.Node node;
+        final int lo, hi;
+        final int lexiconLo, lexiconHi;
+
+        GestureCursor(String key, PrefixTrie.Node node, int lo, int hi, int lexiconLo, int lexiconHi) {
+            this.key = key;
+            this.node = node;
+            this.lo = lo;
+            this.hi = hi;
+            this.lexiconLo = lexiconLo;
+            this.lexiconHi = lexiconHi;
+        }
+    }
+
+    /**
+     * All word sources of one published Index as a GestureDecoder.Dictionary.
+     * Every step only narrows the parent's ranges, so a step costs two short binary searches per list.
+     */
+    private final class GestureDictionary implements GestureDecoder.Dictionary<GestureCursor> {
+        private final Index idx;
+        // The snapshot may be replaced by the writer during a decode; the ranges belong to this one
+        private final BinaryDictionary snapshot = PredictionEngine.this.snapshot;
+
+        GestureDictionary(Index idx) {
+            this.idx = idx;
+        }
+
+        @Override
+        public GestureCursor root() {
+            return new GestureCursor("", idx.words.getRoot(), 0, snapshot != null ? snapshot.size() : 0,
+                    0, lexicon != null ? lexicon.size() : 0);
+        }
+
+        @Override
+        public GestureCursor step(GestureCursor cursor, char c) {
+            String key = cursor.key + c;
+            PrefixTrie.Node node = idx.words.step(cursor.node, c);
+            int lo = 0;
+            int hi = 0;
+            if (cursor.hi > cursor.lo) {
+                lo = snapshot.lowerBound(key, cursor.lo, cursor.hi);
+                hi = snapshot.upperBound(key, lo, cursor.hi);
+            }
+            int lexiconLo = 0;
+            int lexiconHi = 0;
+            if (cursor.lexiconHi > cursor.lexiconLo) {
+                lexiconLo = lexicon.lowerBound(key, cursor.lexiconLo, cursor.lexiconHi);
+                lexiconHi = lexicon.upperBound(key, lexiconLo, cursor.lexiconHi);
+            }
+            if (node == null && hi == lo && lexiconHi == lexiconLo) return null;
+            return new GestureCursor(key, node, lo, hi, lexiconLo, lexiconHi);
+        }
+
+        @Override
+        public String wordAt(GestureCursor cursor) {
+            // The lower-case spelling wins; shorter keys sort first, so an exact match starts its range
+            if (cursor.node != null && cursor.node.words != null) {
+                String[] spellings = cursor.node.words;
+                return Arrays.binarySearch(spellings, cursor.key) >= 0 ? cursor.key : spellings[0];
+            }
+            if (cursor.hi > cursor.lo) {
+                String w = snapshot.getWord(cursor.lo);
+                if (w.length() == cursor.key.length()) return w;
+            }
+            if (cursor.lexiconHi > cursor.lexiconLo) {
+                String w = lexicon.getWord(cursor.lexiconLo);
+                if (w.length() == cursor.key.length()) return w;
+            }
+            return null;
+        }
+
+        @Override
+        public double probability(GestureCursor cursor) {
+            NgramModel ngrams = idx.ngrams;
+            double p = ngrams.score(-1, -1, ngrams.getVocabulary().getId(cursor.key), 0);
+            if (cursor.lexiconHi > cursor.lexiconLo
+                    && lexicon.getWord(cursor.lexiconLo).length() == cursor.key.length()) {
+                p = Math.max(p, lexicon.probability(cursor.lexiconLo));
+            }
+            return p;
         }
-        return new ArrayList<>();
     }
 
     /**
      * Learns a new word when the user types Space/Enter.
+     * Only the new word is appended to the journal (no full dictionary rewrite).
      */
     public void learnWord(String word) {
         if (word == null || word.trim().length() < 2) return;
-        String cleanWord = word.trim();
+        final String cleanWord = word.trim();
         
-        if (!userDictionary.contains(cleanWord)) {
-            userDictionary.add(cleanWord);
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.putStringSet(KEY_WORDS, userDictionary);
-            editor.apply();
-        }
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (addWord(cleanWord)) {
+                    journal.appendWord(cleanWord);
+                    publishWords();
+                    compactIfNeeded();
+                }
+            }
+        });
     }
 
     /**
-     * NEW: Batch Learn words (Prevents crash when copying Wikipedia/Large Text).
-     * Adds all words to memory first, then saves to disk ONCE.
+     * Learns the vocabulary of a (possibly very large) copied text.
+     * The text is tokenized (all scripts) and counted on the calling thread, using parallel chunks for
+     * large texts, so call it off the main thread. Every distinct word is then queued once, with its count.
      */
-    public void learnWordsBatch(List<String> words) {
-        if (words == null || words.isEmpty()) return;
-        
-        boolean modified = false;
-        for (String w : words) {
-            if (w != null && w.length() > 1) {
-                if (!userDictionary.contains(w)) {
-                    userDictionary.add(w);
-                    modified = true;
+    public void learnText(CharSequence text) {
+        if (text == null || text.length() == 0) return;
+        learnWordCounts(WordTokenizer.countWords(text));
+    }
+
+    /**
+     * Learns words with their number of occurrences (the counts feed the unigram frequencies used for ranking).
+     */
+    public void learnWordCounts(Map<String, Integer> counts) {
+        if (counts == null || counts.isEmpty()) return;
+        final Map<String, Integer> batch = new HashMap<>(counts);
+
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                List<String> added = new ArrayList<>();
+                for (Map.Entry<String, Integer> entry : batch.entrySet()) {
+                    if (addWordCount(entry.getKey(), entry.getValue(), false)) added.add(entry.getKey());
                 }
+                correctionIndex.addAll(added);
+                journal.appendWordCounts(batch);
+                publishWords();
+                publishNgramsLater();
+                compactIfNeeded();
             }
-        }
-
-        if (modified) {
-            // Single Disk Write for thousands of words
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.putStringSet(KEY_WORDS, userDictionary);
-            editor.apply();
-        }
+        });
     }
 
     /**
      * Learns the relationship between two words.
      */
     public void learnNextWord(String prev, String current) {
+        learnNextWord(null, prev, current);
+    }
+
+    /**
+     * Learns the relationship between the two previous words and the current one.
+     * 'prev2' may be null (start of the text), then only the pair is counted.
+     */
+    public void learnNextWord(String prev2, String prev, String current) {
         if (prev == null || current == null || prev.isEmpty() || current.isEmpty()) return;
         
-        String key = prev.toLowerCase().trim();
-        String value = current.trim();
-        
-        List<String> list = bigramMap.get(key);
-        if (list == null) {
-            list = new ArrayList<>();
-            bigramMap.put(key, list);
-        }
+        final String key = prev.toLowerCase().trim();
+        final String value = current.trim();
+        final String key2 = (prev2 != null && !prev2.trim().isEmpty()) ? prev2.toLowerCase().trim() : null;
         
-        if (list.contains(value)) {
-            list.remove(value);
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                addNextWord(key2, key, value);
+                if (key2 != null) {
+                    journal.appendTrigram(key2, key, value);
+                } else {
+                    journal.appendBigram(key, value);
+                }
+                publishWords();
+                publishNgramsLater();
+                compactIfNeeded();
+            }
+        });
+    }
+
+    /**
+     * Publishes the current trie (O(1)) together with the last published n-gram view. Writer thread only.
+     */
+    private void publishWords() {
+        index = new Index(wordIndex.snapshot(), index.ngrams);
+    }
+
+    /**
+     * Publishes a new n-gram view after NGRAM_PUBLISH_DELAY_MS, once for any number of changes. Writer thread only.
+     */
+    private void publishNgramsLater() {
+        if (ngramPublishPending) return;
+        ngramPublishPending = true;
+        try {
+            writer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ngramPublishPending = false;
+                    index = new Index(wordIndex.snapshot(), ngrams.snapshot());
+                }
+            }, NGRAM_PUBLISH_DELAY_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Released: nobody reads this engine any more
         }
-        list.add(0, value);
-        
-        if (list.size() > 5) list.remove(list.size() - 1);
-        
-        saveBigrams();
+    }
+
+    /**
+     * Adds a word to the in-memory indexes. Returns true if it was new.
+     * Batches pass indexCorrection = false and add all new words to the correction index at once.
+     */
+    private boolean addWord(String word) {
+        return addWord(word, true);
+    }
+
+    private boolean addWord(String word, boolean indexCorrection) {
+        if (snapshot != null && !userDictionary.contains(word) && snapshot.contains(word)) return false;
+        if (!userDictionary.add(word)) return false;
+        wordIndex.add(word);
+        if (indexCorrection) correctionIndex.add(word);
+        return true;
+    }
+
+    /**
+     * Adds a word (if new) and 'count' occurrences of it to the unigram frequencies. Returns true if the word was new.
+     */
+    private boolean addWordCount(String word, int count, boolean indexCorrection) {
+        if (word.length() < 2 || count <= 0) return false;
+        boolean added = addWord(word, indexCorrection);
+        ngrams.addUnigram(word, count);
+        indexFrequency(word);
+        return added;
+    }
+
+    /**
+     * Counts one more occurrence of 'value' after 'key' (and after 'key2 key' if key2 is set).
+     */
+    private void addNextWord(String key2, String key, String value) {
+        ngrams.learn(key2, key, value);
+        indexFrequency(value);
+    }
+
+    /**
+     * Copies the unigram count of a word into the trie, so ranked suggestions can find it best-first.
+     */
+    private void indexFrequency(String word) {
+        int count = ngrams.getUnigramCount(ngrams.getVocabulary().getId(word));
+        if (count > 0) wordIndex.setFrequency(word, count);
+    }
+
+    private static boolean equalWords(String a, String b) {
+        return a == null ? b == null : a.equals(b);
     }
 
     /**
      * Auto-Correction Logic.
+     * UPDATED: Candidates are ranked by a keyboard-aware distance (see setKeyLayout): typos on touching keys
+     * and swapped letters ("teh") cost less than arbitrary edits, and ties go to the more frequently used word.
+     * Only the typo's one-character deletes are looked up first; the wider lookup runs only if nothing
+     * closer than two cheap edits was found.
+     * UPDATED: Snapshot and lexicon words are correction candidates too. They are found by walking the
+     * mapped lists (MappedWordList.collectNear), so neither has to be copied into the SymSpell index.
      */
     public String getBestMatch(String typo) {
         if (typo == null || typo.length() < 3) return null;
         
         // If word is already valid, do not correct
-        if (userDictionary.contains(typo.toLowerCase())) {
+        Index idx = index;
+        PrefixTrie words = idx.words;
+        String lower = typo.toLowerCase();
+        if (words.contains(lower) || (snapshot != null && snapshot.contains(lower))
+                || (lexicon != null && (lexicon.contains(lower) || lexicon.contains(typo)))) {
             return null; 
         }
 
-        String bestWord = null;
-        int minDistance = Integer.MAX_VALUE;
         String target = typo.toLowerCase();
+        KeyProximity keys = keyLayout;
+        String bestWord;
 
-        for (String dictWord : userDictionary) {
-            int distance = calculateLevenshteinDistance(target, dictWord.toLowerCase());
-            
-            if (distance < minDistance && distance <= 2 && Math.abs(dictWord.length() - target.length()) <= 2) {
-                minDistance = distance;
-                bestWord = dictWord;
+        if (correctionIndexReady) {
+            // Only verify the words that share a delete variant with the typo (or are one edit from it)
+            Set<String> nearby = new HashSet<>();
+            correctionIndex.lookup(target, 1, nearby);
+            if (snapshot != null) snapshot.collectNear(target, 1, false, nearby);
+            if (lexicon != null) lexicon.collectNear(target, 1, false, nearby);
+            bestWord = closestWord(target, nearby, keys, idx.ngrams);
+
+            // Words only reachable by two deletes need at least two edits, the cheapest being two touching keys
+            int twoEdits = keys != null ? 2 * KeyProximity.NEIGHBOR_COST : 2 * KeyProximity.EDIT_COST;
+            if (bestWord == null || correctionCost(target, bestWord, keys) >= twoEdits) {
+                Set<String> wider = new HashSet<>();
+                correctionIndex.lookup(target, SymSpellIndex.MAX_DISTANCE, wider);
+                if (snapshot != null) snapshot.collectNear(target, SymSpellIndex.MAX_DISTANCE, true, wider);
+                if (lexicon != null) lexicon.collectNear(target, SymSpellIndex.MAX_DISTANCE, true, wider);
+                wider.removeAll(nearby);
+                if (bestWord != null) wider.add(bestWord);
+                bestWord = closestWord(target, wider, keys, idx.ngrams);
             }
+        } else {
+            List<String> all = new ArrayList<>();
+            words.collect(words.getRoot(), true, Integer.MAX_VALUE, all);
+            if (snapshot != null) snapshot.collectNear(target, SymSpellIndex.MAX_DISTANCE, true, all);
+            if (lexicon != null) lexicon.collectNear(target, SymSpellIndex.MAX_DISTANCE, true, all);
+            bestWord = closestWord(target, all, keys, idx.ngrams);
         }
-        
-        if (minDistance == 0) return null; 
+
+        if (bestWord == null || correctionCost(target, bestWord, keys) == 0) return null;
         return bestWord;
     }
 
-    private int calculateLevenshteinDistance(String s1, String s2) {
-        int[][] dp = new int[s1.length() + 1][s2.length() + 1];
-        for (int i = 0; i <= s1.length(); i++) dp[i][0] = i;
-        for (int j = 0; j <= s2.length(); j++) dp[0][j] = j;
+    /**
+     * Selects the keyboard layout used to weigh corrections (shared by all languages). May be null.
+     */
+    public static void setKeyLayout(KeyProximity keys) {
+        keyLayout = keys;
+    }
+
+    /**
+     * Returns the candidate with the lowest weighted distance (at most MAX_CORRECTION_COST), preferring
+     * the word with the higher usage count on ties, then the one more frequent in the lexicon.
+     * Each check is bounded by the best cost so far.
+     */
+    private String closestWord(String target, Collection<String> candidates, KeyProximity keys, NgramModel ngrams) {
+        String bestWord = null;
+        int bestCost = MAX_CORRECTION_COST;
+        long bestCount = -1;
+        for (String dictWord : candidates) {
+            // Bounded, case-insensitive and allocation-free; anything above bestCost comes back as bestCost + 1
+            int cost = editDistance.weightedDistance(target, dictWord, bestCost, keys);
+            if (cost > bestCost) continue;
 
-        for (int i = 1; i <= s1.length(); i++) {
-            for (int j = 1; j <= s2.length(); j++) {
-                int cost = (s1.charAt(i - 1) == s2.charAt(j - 1)) ? 0 : 1;
-                dp[i][j] = Math.min(Math.min(dp[i - 1][j] + 1, dp[i][j - 1] + 1), dp[i - 1][j - 1] + cost);
+            // The user's own count first, the lexicon frequency class (0..255) breaks the remaining ties
+            long count = (long) ngrams.getUnigramCount(ngrams.getVocabulary().getId(dictWord)) << 8;
+            if (lexicon != null) {
+                int i = lexicon.indexOf(dictWord);
+                if (i >= 0) count |= lexicon.frequencyClass(i);
+            }
+            if (bestWord == null || cost < bestCost || count > bestCount) {
+                bestWord = dictWord;
+                bestCost = cost;
+                bestCount = count;
             }
         }
-        return dp[s1.length()][s2.length()];
+        return bestWord;
     }
 
-    // --- Persistence for Bigrams ---
-    
-    private void saveBigrams() {
-        StringBuilder sb = new StringBuilder();
-        for (Map.Entry<String, List<String>> entry : bigramMap.entrySet()) {
-            sb.append(entry.getKey()).append(":");
-            sb.append(TextUtils.join(",", entry.getValue()));
-            sb.append("|");
-        }
-        prefs.edit().putString(KEY_BIGRAMS, sb.toString()).apply();
+    private int correctionCost(String target, String word, KeyProximity keys) {
+        return editDistance.weightedDistance(target, word, MAX_CORRECTION_COST, keys);
     }
 
+    // --- Persistence (Snapshot + Journal) ---
+
+    /**
+     * Once enough events are in the journal, writes a full snapshot and lets the journal truncate itself.
+     * Writer thread only.
+     */
+    private void compactIfNeeded() {
+        if (journal.needsCompaction()) writeSnapshot();
+    }
+
+    /**
+     * Writes a new binary snapshot (old snapshot + recently learned words) on the journal thread.
+     * The in-memory data is copied here; the running engine keeps using its current mapping,
+     * the new file is picked up on the next start.
+     */
+    private void writeSnapshot() {
+        final BinaryDictionary previous = snapshot;
+        final List<String> recentWords = new ArrayList<>(userDictionary);
+        final NgramModel ngramsCopy = ngrams.snapshot();
+
+        journal.compact(new LearnJournal.SnapshotWriter() {
+            @Override
+            public boolean writeSnapshot(long journalSequence) {
+                List<String> allWords = new ArrayList<>(recentWords);
+                if (previous != null) {
+                    for (int i = 0; i < previous.size(); i++) allWords.add(previous.getWord(i));
+                }
+                try {
+                    BinaryDictionary.write(dictFile, allWords, ngramsCopy, journalSequence);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return false;
+                }
+                // The binary file now holds everything, drop the legacy copy (English only)
+                if (isDefaultLanguage()) prefs.edit().remove(KEY_WORDS).remove(KEY_BIGRAMS).apply();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Reads bigrams from the legacy "key:a,b|key:c|" SharedPreferences string (migration only).
+     */
     private void loadBigrams() {
         String raw = prefs.getString(KEY_BIGRAMS, "");
         if (!raw.isEmpty()) {
@@ -225,7 +1181,10 @@ public class PredictionEngine {
                 if (parts.length == 2) {
                     String key = parts[0];
                     String[] values = parts[1].split(",");
-                    bigramMap.put(key, new ArrayList<>(Arrays.asList(values)));
+                    // Most recent follower first: keep that order as counts
+                    for (int i = 0; i < values.length; i++) {
+                        ngrams.addBigram(key, values[i], values.length - i);
+                    }
                 }
             }
         }
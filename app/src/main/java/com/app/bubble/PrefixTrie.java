@@ -0,0 +1,300 @@
+package com.app.bubble;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Compact prefix tree used by PredictionEngine for dictionary lookups.
+ * Keys are normalized to lower case, while the original spelling of every word is kept at its end node.
+ * Children are stored in sorted char arrays, so a walk visits words in alphabetical order and
+ * a lookup costs O(prefix length) no matter how many words are stored.
+ * Words can carry a usage frequency; every node keeps the highest frequency of its subtree,
+ * so the most frequent completions of a prefix are found best-first without a full walk.
+ *
+ * The trie is copy-on-write: snapshot() returns a read-only view in O(1), and later changes copy
+ * the nodes on their path instead of modifying nodes the view can reach. Nodes created since the
+ * last snapshot belong to the trie and are changed in place, so a batch of adds stays cheap.
+ */
+public class PrefixTrie {
+
+    private static final char[] EMPTY_KEYS = new char[0];
+    private static final Node[] EMPTY_CHILDREN = new Node[0];
+
+    public static final class Node {
+        // Trie that may modify this node in place (any other trie copies it first)
+        final Object owner;
+        char[] keys = EMPTY_KEYS;
+        Node[] children = EMPTY_CHILDREN;
+        int childCount;
+        // Original spellings that end at this node (e.g. "Apple" and "apple"), sorted. Null if none.
+        String[] words;
+        // Frequency of each entry in 'words' (same order), and the maximum over the whole subtree
+        int[] frequencies;
+        int maxFrequency;
+
+        Node(Object owner) {
+            this.owner = owner;
+        }
+
+        Node child(char c) {
+            int idx = indexOf(keys, childCount, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        public boolean hasWords() {
+            return words != null;
+        }
+    }
+
+    // Best-first order for topByFrequency (highest subtree frequency first)
+    private static final Comparator<Node> BY_MAX_FREQUENCY = new Comparator<Node>() {
+        @Override
+        public int compare(Node a, Node b) {
+            return b.maxFrequency < a.maxFrequency ? -1 : (b.maxFrequency == a.maxFrequency ? 0 : 1);
+        }
+    };
+
+    private Object owner = new Object();
+    private Node root = new Node(owner);
+    private int size = 0;
+
+    public PrefixTrie() {
+    }
+
+    private PrefixTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Read-only view of the current contents. O(1); later changes to this trie are not visible in it.
+     */
+    public PrefixTrie snapshot() {
+        // Every node reachable now becomes shared: from here on this trie copies before writing
+        owner = new Object();
+        return new PrefixTrie(root, size);
+    }
+
+    /**
+     * Adds a word. Returns true if this exact spelling was not stored before.
+     */
+    public boolean add(String word) {
+        if (word == null || word.isEmpty()) return false;
+        return insert(word) >= 0;
+    }
+
+    /**
+     * Sets the frequency of a word, adding the word if needed. Frequencies may only grow
+     * (the subtree maxima along the path are raised, never lowered).
+     */
+    public void setFrequency(String word, int frequency) {
+        if (word == null || word.isEmpty()) return;
+        insert(word);
+
+        // insert() made the whole path writable
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            if (frequency > node.maxFrequency) node.maxFrequency = frequency;
+            node = node.child(Character.toLowerCase(word.charAt(i)));
+        }
+        if (frequency > node.maxFrequency) node.maxFrequency = frequency;
+        node.frequencies[Arrays.binarySearch(node.words, word)] = frequency;
+    }
+
+    /**
+     * Work queue for topByFrequency. Callers keep one and pass it to every call, so a keystroke doesn't allocate.
+     */
+    public static PriorityQueue<Node> newFrequencyQueue() {
+        return new PriorityQueue<>(16, BY_MAX_FREQUENCY);
+    }
+
+    /**
+     * Finds the (up to) 'limit' most frequent words below 'node', best first, and returns how many were found.
+     * Words with frequency 0 are never returned. Subtrees whose maximum cannot beat the current results are
+     * never entered, so the cost depends on the number of results rather than on the size of the subtree.
+     * 'queue' comes from newFrequencyQueue() and is cleared first.
+     */
+    public int topByFrequency(Node node, boolean includeSelf, int limit, String[] outWords, int[] outFrequencies,
+                              PriorityQueue<Node> queue) {
+        if (node == null || limit <= 0 || node.maxFrequency == 0) return 0;
+
+        int found = 0;
+        queue.clear();
+        queue.add(node);
+        while (!queue.isEmpty()) {
+            Node n = queue.poll();
+            // Nothing left in the queue can beat the weakest result
+            if (found == limit && n.maxFrequency <= outFrequencies[found - 1]) break;
+
+            if (n.words != null && (n != node || includeSelf)) {
+                for (int i = 0; i < n.words.length; i++) {
+                    int f = n.frequencies[i];
+                    if (f == 0 || (found == limit && f <= outFrequencies[found - 1])) continue;
+
+                    int pos = found < limit ? found++ : found - 1;
+                    while (pos > 0 && outFrequencies[pos - 1] < f) {
+                        outWords[pos] = outWords[pos - 1];
+                        outFrequencies[pos] = outFrequencies[pos - 1];
+                        pos--;
+                    }
+                    outWords[pos] = n.words[i];
+                    outFrequencies[pos] = f;
+                }
+            }
+            for (int i = 0; i < n.childCount; i++) {
+                if (n.children[i].maxFrequency > 0) queue.add(n.children[i]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Exact (case-sensitive) membership test, same semantics as Set.contains().
+     */
+    public boolean contains(String word) {
+        if (word == null || word.isEmpty()) return false;
+        Node node = find(word);
+        return node != null && node.words != null && Arrays.binarySearch(node.words, word) >= 0;
+    }
+
+    /**
+     * Returns the node reached by the (case-insensitive) prefix, or null if no word starts with it.
+     */
+    public Node find(CharSequence prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(prefix.charAt(i)));
+        }
+        return node;
+    }
+
+    /**
+     * Returns the child of a node for the next typed character (used for incremental walks).
+     */
+    public Node step(Node node, char c) {
+        return node == null ? null : node.child(Character.toLowerCase(c));
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends up to 'limit' words below 'node' in alphabetical order.
+     * Words ending exactly at 'node' are skipped when includeSelf is false (the prefix itself is not a suggestion).
+     * Stops as soon as the limit is reached, so the cost depends on the number of results, not the dictionary size.
+     */
+    public void collect(Node node, boolean includeSelf, int limit, List<String> out) {
+        if (node == null || out.size() >= limit) return;
+        if (includeSelf && node.words != null) {
+            for (String w : node.words) {
+                if (out.size() >= limit) return;
+                out.add(w);
+            }
+        }
+        for (int i = 0; i < node.childCount && out.size() < limit; i++) {
+            collect(node.children[i], true, limit, out);
+        }
+    }
+
+    // --- Internal helpers ---
+
+    /**
+     * Inserts a word and returns the index of its spelling in the end node, or -1 if it was already stored.
+     */
+    private int insert(String word) {
+        root = writable(root);
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            char c = Character.toLowerCase(word.charAt(i));
+            int idx = indexOf(node.keys, node.childCount, c);
+            if (idx >= 0) {
+                Node child = writable(node.children[idx]);
+                node.children[idx] = child;
+                node = child;
+            } else {
+                node = insertChild(node, -(idx + 1), c);
+            }
+        }
+
+        if (node.words == null) {
+            node.words = new String[] { word };
+            node.frequencies = new int[1];
+            size++;
+            return 0;
+        }
+
+        int pos = Arrays.binarySearch(node.words, word);
+        if (pos >= 0) return -1;
+
+        int insertAt = -(pos + 1);
+        int n = node.words.length;
+        String[] grown = new String[n + 1];
+        int[] grownFrequencies = new int[n + 1];
+        System.arraycopy(node.words, 0, grown, 0, insertAt);
+        System.arraycopy(node.frequencies, 0, grownFrequencies, 0, insertAt);
+        grown[insertAt] = word;
+        System.arraycopy(node.words, insertAt, grown, insertAt + 1, n - insertAt);
+        System.arraycopy(node.frequencies, insertAt, grownFrequencies, insertAt + 1, n - insertAt);
+        node.words = grown;
+        node.frequencies = grownFrequencies;
+        size++;
+        return insertAt;
+    }
+
+    /**
+     * Returns 'node' if this trie owns it, otherwise a private copy (the caller links it into its parent).
+     */
+    private Node writable(Node node) {
+        if (node.owner == owner) return node;
+        Node copy = new Node(owner);
+        copy.keys = node.keys.clone();
+        copy.children = node.children.clone();
+        copy.childCount = node.childCount;
+        // 'words' is replaced, never modified, on insert; frequencies are updated in place
+        copy.words = node.words;
+        copy.frequencies = node.frequencies != null ? node.frequencies.clone() : null;
+        copy.maxFrequency = node.maxFrequency;
+        return copy;
+    }
+
+    private Node insertChild(Node parent, int insertAt, char c) {
+        if (parent.childCount == parent.keys.length) {
+            int newCap = parent.keys.length == 0 ? 2 : parent.keys.length * 2;
+            char[] newKeys = new char[newCap];
+            Node[] newChildren = new Node[newCap];
+            System.arraycopy(parent.keys, 0, newKeys, 0, parent.childCount);
+            System.arraycopy(parent.children, 0, newChildren, 0, parent.childCount);
+            parent.keys = newKeys;
+            parent.children = newChildren;
+        }
+        int tail = parent.childCount - insertAt;
+        System.arraycopy(parent.keys, insertAt, parent.keys, insertAt + 1, tail);
+        System.arraycopy(parent.children, insertAt, parent.children, insertAt + 1, tail);
+
+        Node child = new Node(owner);
+        parent.keys[insertAt] = c;
+        parent.children[insertAt] = child;
+        parent.childCount++;
+        return child;
+    }
+
+    private static int indexOf(char[] keys, int count, char c) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char k = keys[mid];
+            if (k < c) lo = mid + 1;
+            else if (k > c) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+}
@@ -0,0 +1,162 @@
+package com.app.bubble;
+
+import android.view.inputmethod.InputConnection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live (direct) translation of a growing text, sentence by sentence.
+ *
+ * The text is split into sentences; a sentence is finished once its terminator is followed by whitespace.
+ * Translations are cached per sentence, so a keystroke only sends the sentence being typed to TranslateApi.
+ * In the editor the finished sentences are plain text and only the open one is composing text, which is
+ * the only part rewritten by the next result.
+ */
+public class SegmentedTranslator {
+
+    /** A translation of the whole text; the first 'stableLength' chars belong to finished sentences. */
+    public static final class Output {
+        public final String text;
+        public final int stableLength;
+
+        Output(String text, int stableLength) {
+            this.text = text;
+            this.stableLength = stableLength;
+        }
+    }
+
+    private static final int MAX_CACHED_SEGMENTS = 64;
+
+    // "targetLang|sentence" -> translation (background thread)
+    private final Map<String, String> cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHED_SEGMENTS;
+        }
+    };
+
+    // Editor state (main thread): the output in front of the cursor and how much of it is plain text
+    private String output = "";
+    private int committedLength = 0;
+
+    /**
+     * Translates 'text', reusing the cached sentences. Blocking (network); call off the main thread.
+     * Returns null if a sentence could not be translated.
+     */
+    public synchronized Output translate(String fromLang, String toLang, String text) {
+        List<String> segments = split(text);
+        StringBuilder out = new StringBuilder();
+        int stableLength = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            int start = 0;
+            int end = segment.length();
+            while (start < end && Character.isWhitespace(segment.charAt(start))) start++;
+            while (end > start && Character.isWhitespace(segment.charAt(end - 1))) end--;
+
+            out.append(segment, 0, start);
+            if (start < end) {
+                String sentence = segment.substring(start, end);
+                String key = toLang + "|" + sentence;
+                String translated = cache.get(key);
+                if (translated == null) {
+                    translated = TranslateApi.translate(fromLang, toLang, sentence);
+                    if (translated == null) return null;
+                    cache.put(key, translated);
+                }
+                out.append(translated);
+            }
+            out.append(segment, end, segment.length());
+
+            if (i < segments.size() - 1 || isFinished(segment)) stableLength = out.length();
+        }
+        return new Output(out.toString(), stableLength);
+    }
+
+    /**
+     * Puts 'next' in front of the cursor (where the previous output is), in one batch edit.
+     * Newly finished sentences become plain text; only the open sentence is rewritten as composing text.
+     */
+    public void apply(InputConnection ic, Output next) {
+        if (next.text.equals(output) && next.stableLength == committedLength) return;
+
+        int prefix = 0;
+        int max = Math.min(output.length(), next.text.length());
+        while (prefix < max && output.charAt(prefix) == next.text.charAt(prefix)) prefix++;
+
+        ic.beginBatchEdit();
+        if (prefix < committedLength) {
+            // Edited back into a finished sentence: take its translation back out of the editor
+            ic.setComposingText("", 1);
+            ic.deleteSurroundingText(committedLength - prefix, 0);
+            committedLength = prefix;
+        }
+        if (next.stableLength > committedLength) {
+            ic.setComposingText(next.text.substring(committedLength, next.stableLength), 1);
+            ic.finishComposingText();
+            committedLength = next.stableLength;
+        }
+        ic.setComposingText(next.text.substring(committedLength), 1);
+        ic.endBatchEdit();
+        output = next.text;
+    }
+
+    /**
+     * Removes the whole output from the editor (the source text was deleted).
+     */
+    public void clear(InputConnection ic) {
+        apply(ic, new Output("", 0));
+    }
+
+    /**
+     * Forgets the editor state (the output was finished or the cursor moved); the cache is kept.
+     */
+    public void reset() {
+        output = "";
+        committedLength = 0;
+    }
+
+    public boolean hasOutput() {
+        return !output.isEmpty();
+    }
+
+    /**
+     * Sentences of 'text' with their trailing whitespace; the last one may be open (unfinished).
+     */
+    static List<String> split(String text) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (c == '\n' || (isTerminator(c) && i + 1 < n && Character.isWhitespace(text.charAt(i + 1)))) {
+                i++;
+                while (i < n && Character.isWhitespace(text.charAt(i))) i++;
+                segments.add(text.substring(start, i));
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        if (start < n) segments.add(text.substring(start));
+        return segments;
+    }
+
+    private static boolean isFinished(String segment) {
+        int end = segment.length();
+        if (end == 0 || !Character.isWhitespace(segment.charAt(end - 1))) return false;
+        while (end > 0 && Character.isWhitespace(segment.charAt(end - 1))) {
+            if (segment.charAt(end - 1) == '\n') return true;
+            end--;
+        }
+        return end > 0 && isTerminator(segment.charAt(end - 1));
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?' || c == '…' || c == '。' || c == '！' || c == '？';
+    }
+}
@@ -2,6 +2,7 @@ package com.app.bubble;
 
 import android.app.Activity;
 import android.content.Context;
+import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.View;
@@ -59,6 +60,10 @@ public class SettingsActivity extends Activity {
 				}
 			});
 
+        // NEW: Debug screen with the keyboard's latency histograms
+        findViewById(R.id.debug_latency_button).setOnClickListener(v ->
+            startActivity(new Intent(this, DebugActivity.class)));
+
         // NEW: Load the AdMob Banner Ad in the footer
         AdView mAdView = findViewById(R.id.adView);
         AdRequest adRequest = new AdRequest.Builder().build();
@@ -0,0 +1,150 @@
+package com.app.bubble;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Symmetric-delete (SymSpell style) index used for Auto-Correction.
+ * Every dictionary word is stored under all strings reachable by deleting up to MAX_DISTANCE characters.
+ * A typo is corrected by generating its own deletes and looking them up, so a correction costs a few
+ * hash lookups instead of an edit-distance pass over the whole dictionary.
+ *
+ * Single writer, any number of readers: buckets are immutable arrays that are replaced, never
+ * modified, so lookup() needs no lock and never waits for a running import.
+ */
+public class SymSpellIndex {
+
+    public static final int MAX_DISTANCE = 2;
+    // Deletes are only generated for the first characters of a word (SymSpell "prefix length").
+    // This keeps the index small for long words; candidates are always verified on the full word.
+    private static final int PREFIX_LENGTH = 7;
+
+    // Delete variant (lower case) -> original words that produce it
+    private final ConcurrentHashMap<String, String[]> deletes = new ConcurrentHashMap<>();
+    private final Set<String> indexedWords = new HashSet<>(); // Writer only
+
+    /**
+     * Adds a word and all its delete variants. Must only be called from the writer thread.
+     */
+    public void add(String word) {
+        if (word == null || word.isEmpty() || !indexedWords.add(word)) return;
+
+        String key = word.toLowerCase();
+        Set<String> variants = new HashSet<>();
+        generateDeletes(prefix(key), MAX_DISTANCE, variants);
+
+        for (String variant : variants) {
+            String[] bucket = deletes.get(variant);
+            if (bucket == null) {
+                deletes.put(variant, new String[] { word });
+            } else {
+                String[] grown = new String[bucket.length + 1];
+                System.arraycopy(bucket, 0, grown, 0, bucket.length);
+                grown[bucket.length] = word;
+                deletes.put(variant, grown);
+            }
+        }
+    }
+
+    /**
+     * Adds many words at once (writer thread only). New entries are grouped per delete variant first,
+     * so every bucket is copied once per batch instead of once per word.
+     */
+    @SuppressWarnings("unchecked")
+    public void addAll(Collection<String> words) {
+        // Variant -> the one new word (most variants), or a List once a second word shares it
+        Map<String, Object> pending = new HashMap<>();
+        Set<String> variants = new HashSet<>();
+        for (String word : words) {
+            if (word == null || word.isEmpty() || !indexedWords.add(word)) continue;
+            variants.clear();
+            generateDeletes(prefix(word.toLowerCase()), MAX_DISTANCE, variants);
+            for (String variant : variants) {
+                Object entry = pending.get(variant);
+                if (entry == null) {
+                    pending.put(variant, word);
+                } else if (entry instanceof String) {
+                    List<String> list = new ArrayList<>(4);
+                    list.add((String) entry);
+                    list.add(word);
+                    pending.put(variant, list);
+                } else {
+                    ((List<String>) entry).add(word);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Object> entry : pending.entrySet()) {
+            String[] bucket = deletes.get(entry.getKey());
+            int old = bucket != null ? bucket.length : 0;
+            Object added = entry.getValue();
+            String[] grown;
+            if (added instanceof String) {
+                grown = bucket != null ? Arrays.copyOf(bucket, old + 1) : new String[1];
+                grown[old] = (String) added;
+            } else {
+                List<String> list = (List<String>) added;
+                grown = bucket != null ? Arrays.copyOf(bucket, old + list.size()) : new String[list.size()];
+                for (int i = 0; i < list.size(); i++) grown[old + i] = list.get(i);
+            }
+            deletes.put(entry.getKey(), grown);
+        }
+    }
+
+    /**
+     * Collects every indexed word that may be within MAX_DISTANCE of the (lower-cased) typo.
+     * Candidates still have to be verified with a real distance check by the caller.
+     */
+    public void lookup(String target, Set<String> candidates) {
+        lookup(target, MAX_DISTANCE, candidates);
+    }
+
+    /**
+     * Like lookup(), but only deletes up to 'queryDistance' characters from the typo.
+     * With queryDistance 1 this needs about one lookup per character instead of one per pair of characters,
+     * and still finds every word within one edit or one swap of adjacent letters.
+     */
+    public void lookup(String target, int queryDistance, Set<String> candidates) {
+        Set<String> variants = new HashSet<>();
+        generateDeletes(prefix(target), Math.min(queryDistance, MAX_DISTANCE), variants);
+
+        for (String variant : variants) {
+            String[] bucket = deletes.get(variant);
+            if (bucket != null) {
+                for (String w : bucket) candidates.add(w);
+            }
+        }
+    }
+
+    /** Number of indexed words (writer thread only). */
+    public int size() {
+        return indexedWords.size();
+    }
+
+    // --- Internal helpers ---
+
+    private static String prefix(String word) {
+        return word.length() > PREFIX_LENGTH ? word.substring(0, PREFIX_LENGTH) : word;
+    }
+
+    /**
+     * Adds 'word' and every string obtained by deleting up to 'distance' characters.
+     */
+    private static void generateDeletes(String word, int distance, Set<String> out) {
+        // A variant's remaining budget only depends on its length, so a repeat never needs re-expanding
+        if (!out.add(word)) return;
+        if (distance == 0 || word.length() <= 1) return;
+
+        for (int i = 0; i < word.length(); i++) {
+            String shorter = word.substring(0, i) + word.substring(i + 1);
+            generateDeletes(shorter, distance - 1, out);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.app.bubble;
+
+import android.os.Process;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * App-wide background work, in four lanes with their own threads and bounded queues:
+ * - LANE_KEYSTROKE: work a keystroke waits on (runs at display priority)
+ * - LANE_INTERACTIVE: requests the user is watching, e.g. translations
+ * - LANE_BACKGROUND: learning and persistence (background priority)
+ * - LANE_PARALLEL: CPU-bound pieces of one background job, run side by side while the job waits
+ *   (e.g. WordTokenizer chunks); its tasks must never wait on this lane themselves
+ * A lane never runs another lane's work, so a long import in the background lane can't delay a translation.
+ *
+ * Tasks queued with submit() always run. Tasks queued with submitReplaceable() carry a coalescing key: a newer
+ * task with the same key replaces the queued one, and once a lane holds LANE_CAPACITY tasks its oldest
+ * replaceable task is dropped. Callers that produce a lot of must-run work (learning, loads) merge it into one
+ * pending task instead of queueing one per event. Both return a Token that cancels the task while it is queued;
+ * long tasks can also poll it. Per-lane counters (including drops) are shown by DebugActivity.
+ */
+public final class TaskScheduler {
+
+    public static final int LANE_KEYSTROKE = 0;
+    public static final int LANE_INTERACTIVE = 1;
+    public static final int LANE_BACKGROUND = 2;
+    public static final int LANE_PARALLEL = 3;
+    public static final int LANE_COUNT = 4;
+
+    private static final String[] LANE_NAMES = { "keystroke", "interactive", "background", "parallel" };
+    // One thread per ordered lane: a cancelled task that already started still finishes, and must not overtake
+    // the request that replaced it (callers also drop results that are no longer current).
+    // The parallel lane leaves one core to the UI.
+    private static final int[] LANE_THREADS = {
+        1, 1, 1, Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1))
+    };
+    // Queued tasks at which replaceable tasks start to be dropped (must-run tasks are never refused)
+    private static final int[] LANE_CAPACITY = { 16, 8, 64, 64 };
+    private static final int[] LANE_PRIORITY = {
+        Process.THREAD_PRIORITY_DISPLAY, Process.THREAD_PRIORITY_DEFAULT, Process.THREAD_PRIORITY_BACKGROUND,
+        Process.THREAD_PRIORITY_BACKGROUND
+    };
+
+    // Per lane counters: [lane * METRICS + metric]
+    private static final int SUBMITTED = 0;
+    private static final int COMPLETED = 1;
+    private static final int CANCELLED = 2;
+    private static final int DROPPED = 3;
+    private static final int FAILED = 4;
+    private static final int WAIT_MICROS = 5;
+    private static final int MAX_WAIT_MICROS = 6;
+    private static final int RUN_MICROS = 7;
+    private static final int METRICS = 8;
+    private static final AtomicLongArray metrics = new AtomicLongArray(LANE_COUNT * METRICS);
+
+    private static final ThreadPoolExecutor[] lanes = new ThreadPoolExecutor[LANE_COUNT];
+
+    /**
+     * Cancels a submitted task: it doesn't start if still queued, and a running task may poll isCancelled().
+     */
+    public static final class Token {
+        private volatile boolean cancelled = false;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private TaskScheduler() {
+    }
+
+    /**
+     * Queues 'task' on 'lane'; it is never dropped. Never blocks the caller.
+     */
+    public static Token submit(int lane, Runnable task) {
+        Token token = new Token();
+        metrics.incrementAndGet(lane * METRICS + SUBMITTED);
+        getLane(lane).execute(new LaneTask(lane, null, task, token));
+        return token;
+    }
+
+    /**
+     * Queues 'task' on 'lane' as replaceable: a queued task with the same 'key' is dropped in its favour
+     * (a newer translation supersedes the pending one), and a full lane drops its oldest replaceable task.
+     */
+    public static Token submitReplaceable(int lane, String key, Runnable task) {
+        Token token = new Token();
+        metrics.incrementAndGet(lane * METRICS + SUBMITTED);
+        ThreadPoolExecutor executor = getLane(lane);
+        synchronized (executor) {
+            LaneTask oldest = null;
+            Iterator<Runnable> it = executor.getQueue().iterator();
+            while (it.hasNext()) {
+                LaneTask queued = (LaneTask) it.next();
+                if (queued.key == null) continue;
+                if (queued.key.equals(key)) {
+                    it.remove();
+                    metrics.incrementAndGet(lane * METRICS + DROPPED);
+                } else if (oldest == null) {
+                    oldest = queued;
+                }
+            }
+            if (oldest != null && executor.getQueue().size() >= LANE_CAPACITY[lane]
+                    && executor.getQueue().remove(oldest)) {
+                metrics.incrementAndGet(lane * METRICS + DROPPED);
+            }
+            executor.execute(new LaneTask(lane, key, task, token));
+        }
+        return token;
+    }
+
+    /** Cancels 'token' if not null (convenience for "cancel the previous request"). */
+    public static void cancel(Token token) {
+        if (token != null) token.cancel();
+    }
+
+    public static String laneName(int lane) {
+        return LANE_NAMES[lane];
+    }
+
+    /** Number of threads of 'lane', i.e. how many of its tasks can run at once. */
+    public static int threads(int lane) {
+        return LANE_THREADS[lane];
+    }
+
+    public static int queued(int lane) {
+        ThreadPoolExecutor executor = lanes[lane];
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * Plain-text table of every lane (counts, queue depth, mean/max queue wait and mean run time in ms).
+     * "drop" counts replaceable tasks that were superseded or evicted before they ran.
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-11s %6s %6s %5s %5s %5s %5s %8s %8s %8s%n",
+                "lane", "sub", "done", "canc", "drop", "fail", "queue", "wait", "maxwait", "run"));
+        for (int lane = 0; lane < LANE_COUNT; lane++) {
+            long done = metrics.get(lane * METRICS + COMPLETED);
+            long failed = metrics.get(lane * METRICS + FAILED);
+            long started = done + failed;
+            sb.append(String.format(Locale.US, "%-11s %6d %6d %5d %5d %5d %5d %8.2f %8.2f %8.2f%n",
+                    LANE_NAMES[lane], metrics.get(lane * METRICS + SUBMITTED), done,
+                    metrics.get(lane * METRICS + CANCELLED), metrics.get(lane * METRICS + DROPPED), failed,
+                    queued(lane),
+                    started == 0 ? 0 : metrics.get(lane * METRICS + WAIT_MICROS) / 1000.0 / started,
+                    metrics.get(lane * METRICS + MAX_WAIT_MICROS) / 1000.0,
+                    started == 0 ? 0 : metrics.get(lane * METRICS + RUN_MICROS) / 1000.0 / started));
+        }
+        return sb.toString();
+    }
+
+    public static void resetMetrics() {
+        for (int i = 0; i < metrics.length(); i++) metrics.set(i, 0);
+    }
+
+    // --- Internal helpers ---
+
+    private static synchronized ThreadPoolExecutor getLane(final int lane) {
+        if (lanes[lane] == null) {
+            // Unbounded: must-run tasks are never refused, replaceable ones are bounded by submitReplaceable
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(LANE_THREADS[lane], LANE_THREADS[lane],
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private int count = 0;
+
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            Thread t = new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Process.setThreadPriority(LANE_PRIORITY[lane]);
+                                    r.run();
+                                }
+                            }, "Bubble-" + LANE_NAMES[lane] + "-" + (++count));
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            // Idle lanes give their threads back
+            executor.allowCoreThreadTimeOut(true);
+            lanes[lane] = executor;
+        }
+        return lanes[lane];
+    }
+
+    private static final class LaneTask implements Runnable {
+        private final int lane;
+        // Coalescing key of a replaceable task, null for must-run tasks
+        private final String key;
+        private final Runnable task;
+        private final Token token;
+        private final long queuedAt = System.nanoTime();
+
+        LaneTask(int lane, String key, Runnable task, Token token) {
+            this.lane = lane;
+            this.key = key;
+            this.task = task;
+            this.token = token;
+        }
+
+        @Override
+        public void run() {
+            if (token.isCancelled()) {
+                metrics.incrementAndGet(lane * METRICS + CANCELLED);
+                return;
+            }
+            long start = System.nanoTime();
+            long wait = (start - queuedAt) / 1000;
+            metrics.addAndGet(lane * METRICS + WAIT_MICROS, wait);
+            long max;
+            while ((max = metrics.get(lane * METRICS + MAX_WAIT_MICROS)) < wait
+                    && !metrics.compareAndSet(lane * METRICS + MAX_WAIT_MICROS, max, wait)) {
+                // Retry: another task raised the maximum meanwhile
+            }
+            try {
+                task.run();
+                metrics.incrementAndGet(lane * METRICS + COMPLETED);
+            } catch (RuntimeException e) {
+                // A failed task must not take the lane's thread down with it
+                metrics.incrementAndGet(lane * METRICS + FAILED);
+                e.printStackTrace();
+            } finally {
+                metrics.addAndGet(lane * METRICS + RUN_MICROS, (System.nanoTime() - start) / 1000);
+            }
+        }
+    }
+}
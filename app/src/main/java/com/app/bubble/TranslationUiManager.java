@@ -13,9 +13,6 @@ import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 /**
  * Manages the In-Keyboard Translation Interface.
  * Handles Language Selection, UI updates, API calls, Live Typing Debounce, and Pasting.
@@ -37,7 +34,10 @@ public class TranslationUiManager {
     // Logic Variables
     private String sourceLangCode = "en"; // Default English
     private String targetLangCode = "es"; // Default Spanish
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
+    // The request in flight; a newer one cancels it if it hasn't started
+    private TaskScheduler.Token translationToken;
+    // Bumped per request (main thread), so a late result for older text is dropped
+    private int translationGeneration = 0;
     private Handler handler = new Handler(Looper.getMainLooper());
 
     // Live Translation Debouncer
@@ -48,6 +48,8 @@ public class TranslationUiManager {
         void onTranslationResult(String translatedText);
         void onCloseTranslation();
         void onPasteText(String text); 
+        // NEW: The language being typed changed (prediction models are per language)
+        void onSourceLanguageChanged(String languageCode);
     }
 
     public TranslationUiManager(Context context, View rootView, TranslationListener listener) {
@@ -88,6 +90,7 @@ public class TranslationUiManager {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 sourceLangCode = LanguageUtils.getCode(position);
+                listener.onSourceLanguageChanged(sourceLangCode);
             }
             @Override public void onNothingSelected(AdapterView<?> parent) {}
         });
@@ -150,6 +153,10 @@ public class TranslationUiManager {
         }
     }
 
+    public String getSourceLangCode() {
+        return sourceLangCode;
+    }
+
     /**
      * Called by BubbleKeyboardService when user types a character.
      * Updates the white preview box AND triggers Live Translation.
@@ -197,7 +204,10 @@ public class TranslationUiManager {
         // Visual feedback
         inputPreview.setHint("Translating...");
 
-        executor.execute(new Runnable() {
+        final int generation = ++translationGeneration;
+        TaskScheduler.cancel(translationToken);
+        translationToken = TaskScheduler.submitReplaceable(TaskScheduler.LANE_INTERACTIVE, "panel-translation",
+                new Runnable() {
             @Override
             public void run() {
                 // Use the existing TranslateApi
@@ -206,7 +216,9 @@ public class TranslationUiManager {
                 handler.post(new Runnable() {
                     @Override
                     public void run() {
-                        if (result != null) {
+                        if (generation != translationGeneration) {
+                            // A newer request owns the text now
+                        } else if (result != null) {
                             // Send back to Service to type it out
                             listener.onTranslationResult(result);
                         } else {
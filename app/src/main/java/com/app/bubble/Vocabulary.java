@@ -0,0 +1,72 @@
+package com.app.bubble;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns words to dense int IDs (0, 1, 2...).
+ * N-gram tables store these IDs instead of String references, so every word string is kept once.
+ * IDs are never reassigned, so a snapshot only needs to remember its size: it shares the
+ * (concurrent) lookup map and the word array with the vocabulary it was taken from.
+ * (NgramModel compacts IDs by building a new vocabulary, never by changing one.)
+ */
+public class Vocabulary {
+
+    private final ConcurrentHashMap<String, Integer> ids;
+    private String[] words;
+    private int size;
+    // Total length of the interned words, for memoryBytes()
+    private long chars;
+
+    public Vocabulary() {
+        this(new ConcurrentHashMap<String, Integer>(), new String[64], 0);
+    }
+
+    private Vocabulary(ConcurrentHashMap<String, Integer> ids, String[] words, int size) {
+        this.ids = ids;
+        this.words = words;
+        this.size = size;
+    }
+
+    /** Returns the ID of a word, or -1 if it was never interned (or only after this snapshot). */
+    public int getId(String word) {
+        Integer id = ids.get(word);
+        return id != null && id < size ? id : -1;
+    }
+
+    /** Returns the ID of a word, assigning the next free one if needed (writer only). */
+    public int intern(String word) {
+        int id = getId(word);
+        if (id >= 0) return id;
+
+        if (size == words.length) words = Arrays.copyOf(words, size * 2);
+        // The word is stored before its ID becomes visible in the shared map
+        words[size] = word;
+        ids.put(word, size);
+        chars += word.length();
+        return size++;
+    }
+
+    public String getWord(int id) {
+        return words[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Approximate heap cost in bytes: the word array, and per word its String and map entry
+     * (about 80 bytes) plus two bytes per char.
+     */
+    public long memoryBytes() {
+        return (long) words.length * 4 + (long) size * 80 + chars * 2;
+    }
+
+    /**
+     * Read-only view of the current words. O(1): later interns only append beyond its size.
+     */
+    public Vocabulary snapshot() {
+        return new Vocabulary(ids, words, size);
+    }
+}
@@ -0,0 +1,165 @@
+package com.app.bubble;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Streaming, Unicode-aware word tokenizer for bulk vocabulary import (copied text).
+ * A word is a run of letters, digits and combining marks in any script (so Malayalam, Hindi or
+ * Tamil vowel signs and ZWJ/ZWNJ stay inside the word), with apostrophes allowed between letters.
+ * The text is scanned once by code point without copying it; only the words themselves become Strings.
+ * Large texts are cut into chunks at word boundaries and counted in parallel on TaskScheduler.LANE_PARALLEL.
+ */
+public class WordTokenizer {
+
+    public interface Sink {
+        /** Called for every word [start, end) of the scanned text. */
+        void onWord(CharSequence text, int start, int end);
+    }
+
+    public static final int MIN_WORD_LENGTH = 2;
+    // Longer runs are URLs, hashes and the like, not vocabulary
+    public static final int MAX_WORD_LENGTH = 48;
+
+    // Below this size a single pass is faster than handing chunks to other threads
+    private static final int PARALLEL_THRESHOLD = 64 * 1024;
+    private static final int CHUNK_SIZE = 128 * 1024;
+
+    /**
+     * Calls the sink for every word in text[from, to).
+     */
+    public static void tokenize(CharSequence text, int from, int to, Sink sink) {
+        int start = -1;
+        int i = from;
+        while (i < to) {
+            int cp = Character.codePointAt(text, i);
+            int next = i + Character.charCount(cp);
+
+            if (isWordChar(cp)) {
+                if (start < 0) start = i;
+            } else if (start >= 0 && isApostrophe(cp) && next < to && Character.isLetter(Character.codePointAt(text, next))) {
+                // "don't", "o'clock": keep going
+            } else if (start >= 0) {
+                emit(text, start, i, sink);
+                start = -1;
+            }
+            i = next;
+        }
+        if (start >= 0) emit(text, start, to, sink);
+    }
+
+    /**
+     * Counts every word of the text in one pass. Texts above PARALLEL_THRESHOLD are split into
+     * chunks that are counted on TaskScheduler.LANE_PARALLEL and merged; the caller waits for the result,
+     * so this must not run on the main thread (or on LANE_PARALLEL) for large texts.
+     */
+    public static Map<String, Integer> countWords(final CharSequence text) {
+        if (text.length() < PARALLEL_THRESHOLD || TaskScheduler.threads(TaskScheduler.LANE_PARALLEL) == 1) {
+            Map<String, int[]> counts = new HashMap<>();
+            countRange(text, 0, text.length(), counts);
+            return toIntegerMap(counts);
+        }
+
+        List<FutureTask<Map<String, int[]>>> parts = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            final int from = start;
+            final int to = chunkEnd(text, Math.min(text.length(), start + CHUNK_SIZE));
+            FutureTask<Map<String, int[]>> part = new FutureTask<>(new Callable<Map<String, int[]>>() {
+                @Override
+                public Map<String, int[]> call() {
+                    Map<String, int[]> counts = new HashMap<>();
+                    countRange(text, from, to, counts);
+                    return counts;
+                }
+            });
+            TaskScheduler.submit(TaskScheduler.LANE_PARALLEL, part);
+            parts.add(part);
+            start = to;
+        }
+
+        Map<String, int[]> merged = null;
+        for (FutureTask<Map<String, int[]>> part : parts) {
+            Map<String, int[]> counts;
+            try {
+                counts = part.get();
+            } catch (Exception e) {
+                e.printStackTrace();
+                continue;
+            }
+            if (merged == null) {
+                merged = counts;
+                continue;
+            }
+            for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+                int[] total = merged.get(entry.getKey());
+                if (total == null) merged.put(entry.getKey(), entry.getValue());
+                else total[0] += entry.getValue()[0];
+            }
+        }
+        return merged != null ? toIntegerMap(merged) : new HashMap<String, Integer>();
+    }
+
+    public static boolean isWordChar(int cp) {
+        if (Character.isLetterOrDigit(cp)) return true;
+        switch (Character.getType(cp)) {
+            case Character.NON_SPACING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+                return true;
+            default:
+                // Zero-width non-joiner / joiner shape Indic conjuncts
+                return cp == 0x200C || cp == 0x200D;
+        }
+    }
+
+    // --- Internal helpers ---
+
+    private static boolean isApostrophe(int cp) {
+        return cp == '\'' || cp == 0x2019;
+    }
+
+    private static void emit(CharSequence text, int start, int end, Sink sink) {
+        int length = Character.codePointCount(text, start, end);
+        if (length < MIN_WORD_LENGTH || length > MAX_WORD_LENGTH) return;
+        sink.onWord(text, start, end);
+    }
+
+    private static void countRange(CharSequence text, int from, int to, final Map<String, int[]> counts) {
+        tokenize(text, from, to, new Sink() {
+            @Override
+            public void onWord(CharSequence t, int start, int end) {
+                String word = t.subSequence(start, end).toString();
+                int[] count = counts.get(word);
+                if (count == null) counts.put(word, new int[] { 1 });
+                else count[0]++;
+            }
+        });
+    }
+
+    /**
+     * Moves a chunk end forward to the next non-word character, so no word is cut in two.
+     */
+    private static int chunkEnd(CharSequence text, int end) {
+        // Never split a surrogate pair
+        if (end < text.length() && Character.isLowSurrogate(text.charAt(end))) end++;
+        while (end < text.length()) {
+            int cp = Character.codePointAt(text, end);
+            if (!isWordChar(cp) && !isApostrophe(cp)) break;
+            end += Character.charCount(cp);
+        }
+        return end;
+    }
+
+    private static Map<String, Integer> toIntegerMap(Map<String, int[]> counts) {
+        Map<String, Integer> result = new HashMap<>(counts.size() * 2);
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return result;
+    }
+}
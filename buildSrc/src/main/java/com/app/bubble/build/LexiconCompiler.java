@@ -0,0 +1,226 @@
+package com.app.bubble.build;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build-time compiler for the bundled word lists (app/src/main/lexicon/<language>.txt).
+ * Writes the memory-mappable format read by com.app.bubble.Lexicon; keep both in sync.
+ *
+ * Input: one word per line, most frequent first. A line may carry its corpus count after the word
+ * ("the 23135851162" or "the\t23135851162"); lines without a count get a Zipf estimate from their rank.
+ * Empty lines and lines starting with '#' are ignored, repeated words have their counts summed.
+ */
+public class LexiconCompiler {
+
+    private static final int MAGIC = 0x424C4558; // "BLEX"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 36;
+    // Prefix ranges of at least this many words get a precomputed top list, of TOP_WORDS word indexes
+    private static final int MIN_TOP_RANGE = 64;
+    private static final int TOP_WORDS = 8;
+    private static final int MAX_WORD_LENGTH = 48;
+    // Estimated count of the first word of a list without counts (count = ZIPF_TOP / rank)
+    private static final long ZIPF_TOP = 1000000000L;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // Same ordering as BinaryDictionary.KEY_ORDER: lower-case key first, exact spelling second
+    private static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            int c = toKey(a).compareTo(toKey(b));
+            return c != 0 ? c : a.compareTo(b);
+        }
+    };
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: LexiconCompiler <words.txt> <out.lex>");
+            System.exit(1);
+        }
+        int count = compile(new File(args[0]), new File(args[1]));
+        System.out.println(count + " words -> " + args[1]);
+    }
+
+    /**
+     * Compiles one word list. Returns the number of words written.
+     */
+    public static int compile(File source, File target) throws IOException {
+        Map<String, long[]> counts = read(source);
+
+        List<String> words = new ArrayList<>(counts.keySet());
+        Collections.sort(words, KEY_ORDER);
+
+        long maxCount = 1;
+        long totalCount = 0;
+        for (long[] c : counts.values()) {
+            maxCount = Math.max(maxCount, c[0]);
+            totalCount += c[0];
+        }
+
+        int n = words.size();
+        List<byte[]> encoded = new ArrayList<>(n);
+        List<String> keys = new ArrayList<>(n);
+        for (String w : words) {
+            encoded.add(w.getBytes(UTF8));
+            keys.add(toKey(w));
+        }
+        double logMax = Math.log(maxCount);
+        int[] classes = new int[n];
+        for (int i = 0; i < n; i++) classes[i] = frequencyClass(counts.get(words.get(i))[0], logMax);
+
+        // (from, to) of every large prefix range, ordered by from, then to
+        List<int[]> ranges = new ArrayList<>();
+        if (n >= MIN_TOP_RANGE) ranges.add(new int[] { 0, n });
+        collectRanges(keys, 0, n, 0, ranges);
+        Collections.sort(ranges, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]);
+            }
+        });
+
+        int pos = HEADER_SIZE + 4 * (n + 1) + n;
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i] = pos;
+            pos += encoded.get(i).length;
+        }
+        offsets[n] = pos;
+
+        File dir = target.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeLong(maxCount);
+            out.writeLong(totalCount);
+            out.writeInt(ranges.size());
+            out.writeInt(MIN_TOP_RANGE);
+            for (int offset : offsets) out.writeInt(offset);
+            for (int c : classes) out.writeByte(c);
+            for (byte[] bytes : encoded) out.write(bytes);
+            for (int[] range : ranges) {
+                out.writeInt(range[0]);
+                out.writeInt(range[1]);
+                for (int index : topWords(classes, range[0], range[1])) out.writeInt(index);
+            }
+        } finally {
+            out.close();
+        }
+        return n;
+    }
+
+    /**
+     * Adds the range of every prefix one char longer than 'depth' inside [from, to) that holds at least
+     * MIN_TOP_RANGE words, then does the same inside it. These are the ranges Lexicon.lowerBound/upperBound
+     * return for a key prefix; keys shorter than the prefix sort first and belong to no child.
+     */
+    private static void collectRanges(List<String> keys, int from, int to, int depth, List<int[]> out) {
+        int i = from;
+        while (i < to && keys.get(i).length() <= depth) i++;
+        while (i < to) {
+            char c = keys.get(i).charAt(depth);
+            int end = i + 1;
+            while (end < to && keys.get(end).charAt(depth) == c) end++;
+            if (end - i >= MIN_TOP_RANGE) {
+                // A range equal to its parent is already written
+                if (i != from || end != to) out.add(new int[] { i, end });
+                collectRanges(keys, i, end, depth + 1, out);
+            }
+            i = end;
+        }
+    }
+
+    /**
+     * The TOP_WORDS most frequent word indexes of [from, to), most frequent first (lower index on ties).
+     */
+    private static int[] topWords(final int[] classes, int from, int to) {
+        List<Integer> indexes = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) indexes.add(i);
+        Collections.sort(indexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return classes[a] != classes[b] ? Integer.compare(classes[b], classes[a]) : Integer.compare(a, b);
+            }
+        });
+        int[] top = new int[TOP_WORDS];
+        for (int k = 0; k < TOP_WORDS; k++) top[k] = indexes.get(k);
+        return top;
+    }
+
+    /**
+     * Log-scale class 1..255 (the lexicon decodes it as maxCount ^ (class / 255)); 0 is never written.
+     */
+    static int frequencyClass(long count, double logMax) {
+        if (logMax <= 0) return 255;
+        long c = Math.round(255 * Math.log(Math.max(count, 1)) / logMax);
+        return (int) Math.max(1, Math.min(255, c));
+    }
+
+    /**
+     * Same per-character lower-casing as BinaryDictionary.toKey.
+     */
+    static String toKey(String word) {
+        StringBuilder sb = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) sb.append(Character.toLowerCase(word.charAt(i)));
+        return sb.toString();
+    }
+
+    private static Map<String, long[]> read(File source) throws IOException {
+        Map<String, long[]> counts = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(source), UTF8));
+        try {
+            long rank = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                rank++;
+
+                String word = line;
+                long count = ZIPF_TOP / rank;
+                int split = indexOfWhitespace(line);
+                if (split > 0) {
+                    word = line.substring(0, split);
+                    try {
+                        count = Long.parseLong(line.substring(split).trim());
+                    } catch (NumberFormatException e) {
+                        throw new IOException(source.getName() + ":" + rank + ": bad count in \"" + line + "\"");
+                    }
+                }
+                int length = word.codePointCount(0, word.length());
+                if (length > MAX_WORD_LENGTH || count <= 0) continue;
+
+                long[] c = counts.get(word);
+                if (c == null) counts.put(word, new long[] { count });
+                else c[0] += count;
+            }
+        } finally {
+            reader.close();
+        }
+        return counts;
+    }
+
+    private static int indexOfWhitespace(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (Character.isWhitespace(line.charAt(i))) return i;
+        }
+        return -1;
+    }
+}